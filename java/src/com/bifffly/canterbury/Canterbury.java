@@ -1,30 +1,58 @@
 package com.bifffly.canterbury;
 
+import com.bifffly.canterbury.cache.AstCache;
+import com.bifffly.canterbury.closure.Evaluator;
 import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.optimizer.AstPrinter;
+import com.bifffly.canterbury.optimizer.Optimizer;
+import com.bifffly.canterbury.interpreter.Resolver;
 import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.parser.ParallelParser;
 import com.bifffly.canterbury.parser.Parser;
 import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.tokens.Source;
 import com.bifffly.canterbury.tokens.Token;
+import com.bifffly.canterbury.tokens.TokenStream;
 import com.bifffly.canterbury.tokens.TokenType;
 import com.bifffly.canterbury.tokens.Tokenizer;
+import com.bifffly.canterbury.vm.Compiler;
+import com.bifffly.canterbury.vm.Prototype;
+import com.bifffly.canterbury.vm.VM;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 
 public class Canterbury {
     private static final Interpreter interpreter = new Interpreter();
+    private static final VM vm = new VM();
+    private static boolean useVM = false;
+    private static Evaluator evaluator = null;
+    private static AstCache cache = null;
+    private static boolean dumpAst = false;
+    private static Optimizer optimizer = Optimizer.standard();
     private static boolean errorState = false;
     private static boolean runtimeErrorState = false;
 
     public static void main(String[] args) throws IOException {
+        int flags = 0;
+        for (; flags < args.length && args[flags].startsWith("--"); flags++) {
+            switch (args[flags]) {
+                case "--vm": useVM = true; break;
+                case "--cache": cache = AstCache.fromEnvironment(); break;
+                case "--dump-ast": dumpAst = true; break;
+                case "--jit": interpreter.enableJit(); break;
+                case "--closures": evaluator = new Evaluator(); break;
+                default: usage();
+            }
+        }
+        args = Arrays.copyOfRange(args, flags, args.length);
         if (args.length > 1) {
-            System.out.println("Usage: canterbury [script]");
-            System.exit(64);
+            usage();
         } else if (args.length == 1) {
             runFile(args[0]);
         } else {
@@ -32,9 +60,26 @@ public class Canterbury {
         }
     }
 
+    private static void usage() {
+        System.out.println("Usage: canterbury [--vm] [--cache] [--dump-ast] [--jit] [--closures] [script]");
+        System.exit(64);
+    }
+
     public static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+        Path script = Paths.get(path);
+        if (cache == null) {
+            run(Source.map(script));
+        } else {
+            String key = cache.key(script);
+            List<Stmt> stmts = cache.load(key);
+            if (stmts == null) {
+                stmts = parse(Source.map(script));
+                if (!errorState) {
+                    cache.store(key, stmts);
+                }
+            }
+            execute(stmts);
+        }
         if (errorState) {
             System.exit(65);
         }
@@ -44,6 +89,7 @@ public class Canterbury {
     }
 
     public static void runREPL() throws IOException {
+        optimizer = Optimizer.interactive();
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
 
@@ -53,43 +99,89 @@ public class Canterbury {
             if (line == null) {
                 break;
             }
-            run(line);
+            run(Source.of(line));
             errorState = false;
         }
     }
 
-    private static void run(String source) {
-        Tokenizer tokenizer = new Tokenizer(source);
-        List<Token> tokens = tokenizer.tokenize();
+    private static void run(Source source) {
+        execute(parse(source));
+    }
+
+    private static List<Stmt> parse(Source source) {
+        ErrorReporter errors = new ErrorReporter();
+        List<Stmt> stmts;
+        try {
+            if (ParallelParser.worthSplitting(source)) {
+                stmts = new ParallelParser(source, errors).parse();
+            } else {
+                Tokenizer tokenizer = new Tokenizer(source, errors);
+                TokenStream tokens = tokenizer.pull();
+
+                Parser parser = new Parser(tokens, errors);
+                stmts = parser.parse();
+            }
+        } finally {
+            report(errors);
+        }
+        return stmts;
+    }
+
+    private static void execute(List<Stmt> stmts) {
+        if (errorState) {
+            return;
+        }
+        stmts = optimizer.optimize(stmts);
+        if (dumpAst) {
+            System.out.println(new AstPrinter().print(stmts));
+        }
 
-        Parser parser = new Parser(tokens);
-        List<Stmt> stmts = parser.parse();
+        Resolver resolver = new Resolver();
+        resolver.resolve(stmts);
         if (errorState) {
             return;
         }
-        interpreter.interpret(stmts);
+        if (useVM) {
+            Compiler compiler = new Compiler();
+            Prototype script = compiler.compile(stmts);
+            if (errorState) {
+                return;
+            }
+            vm.interpret(script);
+        } else if (evaluator != null) {
+            evaluator.interpret(stmts);
+        } else {
+            interpreter.interpret(stmts);
+        }
     }
 
     public static void error(int line, String message) {
-        report(line, "", message);
+        ErrorReporter errors = new ErrorReporter();
+        errors.error(line, message);
+        report(errors);
     }
 
     public static void error(Token token, String message) {
-        if (token.getType() == TokenType.EOF) {
-            report(token.getLine(), " at end", message);
-        } else {
-            report(token.getLine(), " at '" + token.getLexeme()+ "'", message);
-        }
+        ErrorReporter errors = new ErrorReporter();
+        errors.error(token, message);
+        report(errors);
     }
 
     public static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() +
-            "\n[line " + error.getToken().getLine() + "]");
+        // Errors raised inside natives have no token to place them by
+        if (error.getToken() == null) {
+            System.err.println(error.getMessage());
+        } else {
+            System.err.println(error.getMessage() +
+                "\n[line " + error.getToken().getLine() + "]");
+        }
         runtimeErrorState = true;
     }
 
-    private static void report(int line, String loc, String msg) {
-        System.err.println("[line " + line + "] ERROR " + loc + ": " + msg);
-        errorState = true;
+    private static void report(ErrorReporter errors) {
+        errors.getMessages().forEach(System.err::println);
+        if (errors.hadError()) {
+            errorState = true;
+        }
     }
 }
@@ -0,0 +1,40 @@
+package com.bifffly.canterbury;
+
+import com.bifffly.canterbury.tokens.Token;
+import com.bifffly.canterbury.tokens.TokenType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Collects the errors found while reading a piece of source, so pieces read in parallel don't share state
+public class ErrorReporter {
+    private final List<String> messages = new ArrayList<>();
+
+    public void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    public void error(Token token, String message) {
+        if (token.getType() == TokenType.EOF) {
+            report(token.getLine(), " at end", message);
+        } else {
+            report(token.getLine(), " at '" + token.getLexeme()+ "'", message);
+        }
+    }
+
+    public void addAll(ErrorReporter errors) {
+        messages.addAll(errors.messages);
+    }
+
+    public boolean hadError() {
+        return !messages.isEmpty();
+    }
+
+    public List<String> getMessages() {
+        return messages;
+    }
+
+    private void report(int line, String loc, String msg) {
+        messages.add("[line " + line + "] ERROR " + loc + ": " + msg);
+    }
+}
@@ -0,0 +1,73 @@
+package com.bifffly.canterbury.cache;
+
+import com.bifffly.canterbury.parser.stmt.Stmt;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Keeps parsed scripts on disk, keyed by a hash of their source, so that an unchanged script can
+ * skip tokenizing and parsing. Entries hold the tree as the parser produced it; resolving still
+ * happens on every run. Any problem reading or writing an entry just means parsing as usual.
+ */
+public class AstCache {
+    private final Path dir;
+
+    public AstCache(Path dir) {
+        this.dir = dir;
+    }
+
+    // CANTERBURY_CACHE if set, otherwise a directory in the user's home
+    public static AstCache fromEnvironment() {
+        String dir = System.getenv("CANTERBURY_CACHE");
+        if (dir == null) {
+            return new AstCache(Paths.get(System.getProperty("user.home"), ".canterbury", "cache"));
+        }
+        return new AstCache(Paths.get(dir));
+    }
+
+    public String key(Path script) throws IOException {
+        try (FileChannel channel = FileChannel.open(script, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public List<Stmt> load(String key) {
+        Path entry = dir.resolve(key + ".ast");
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AstReader(bytes).read();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void store(String key, List<Stmt> stmts) {
+        try {
+            Files.createDirectories(dir);
+            // Written aside and moved into place, so a concurrent run never sees half an entry
+            Path temp = Files.createTempFile(dir, key, ".tmp");
+            Files.write(temp, new AstWriter().write(stmts));
+            Files.move(temp, dir.resolve(key + ".ast"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // Caching is best effort
+        }
+    }
+}
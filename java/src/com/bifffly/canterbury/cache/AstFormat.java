@@ -0,0 +1,40 @@
+package com.bifffly.canterbury.cache;
+
+// Node tags of the cached tree format. Each node is written as its tag followed by its fields in
+// declaration order; lists are a count followed by their elements.
+final class AstFormat {
+    static final int MAGIC = 0x43414e54;
+    // Bump whenever the layout of a node changes, so stale cache entries are ignored
+    static final int VERSION = 1;
+
+    static final byte NONE = 0;
+    static final byte ASSIGNMENT = 1;
+    static final byte BINARY = 2;
+    static final byte CALL = 3;
+    static final byte CASE = 4;
+    static final byte FUNC = 5;
+    static final byte GET = 6;
+    static final byte GROUPING = 7;
+    static final byte LITERAL = 8;
+    static final byte LOGICAL = 9;
+    static final byte MATCH = 10;
+    static final byte SELF = 11;
+    static final byte STRUCT = 12;
+    static final byte UNARY = 13;
+    static final byte VARIABLE = 14;
+    static final byte BLOCK = 15;
+    static final byte EXPRESSION = 16;
+    static final byte IF = 17;
+    static final byte IMPORT = 18;
+    static final byte RETURN = 19;
+    static final byte WHILE = 20;
+
+    // Tags of literal values, both in literals and in token values
+    static final byte NULL_VALUE = 0;
+    static final byte TRUE_VALUE = 1;
+    static final byte FALSE_VALUE = 2;
+    static final byte NUMBER_VALUE = 3;
+    static final byte STRING_VALUE = 4;
+
+    private AstFormat() {}
+}
@@ -0,0 +1,140 @@
+package com.bifffly.canterbury.cache;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+import com.bifffly.canterbury.tokens.TokenType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.bifffly.canterbury.cache.AstFormat.*;
+
+// Rebuilds a tree written by AstWriter; the result still has to go through the resolver
+class AstReader {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final ByteBuffer in;
+
+    AstReader(ByteBuffer in) {
+        this.in = in;
+    }
+
+    // Null when the data was written in another format version
+    List<Stmt> read() {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        return readStmts();
+    }
+
+    private List<Stmt> readStmts() {
+        int size = in.getInt();
+        List<Stmt> stmts = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            stmts.add(readStmt());
+        }
+        return stmts;
+    }
+
+    private <T extends Expr> List<T> readExprs(Class<T> type) {
+        int size = in.getInt();
+        List<T> exprs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            exprs.add(type.cast(readExpr()));
+        }
+        return exprs;
+    }
+
+    private List<Token> readTokens() {
+        int size = in.getInt();
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(readToken());
+        }
+        return tokens;
+    }
+
+    private Token readToken() {
+        TokenType type = TYPES[in.get()];
+        String lexeme = readString();
+        Object value = readValue();
+        return new Token(type, lexeme, value, in.getInt());
+    }
+
+    private Object readValue() {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL_VALUE: return null;
+            case TRUE_VALUE: return true;
+            case FALSE_VALUE: return false;
+            case NUMBER_VALUE: return in.getDouble();
+            case STRING_VALUE: return readString();
+            default: throw new IllegalStateException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    private String readString() {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private Expr readExpr() {
+        byte tag = in.get();
+        switch (tag) {
+            case NONE: return null;
+            case ASSIGNMENT: return new AssignmentExpr(readExpr(), readExpr());
+            case BINARY: return new BinaryExpr(readExpr(), readToken(), readExpr());
+            case CALL: return new CallExpr(readExpr(), readToken(), readExprs(Expr.class));
+            case CASE: return new CaseExpr(readExpr(), readExpr());
+            case FUNC: return new FuncExpr(readToken(), readTokens(), (BlockStmt) readStmt());
+            case GET: return new GetExpr(readExpr(), readToken());
+            case GROUPING: return new GroupingExpr(readExpr());
+            case LITERAL: return new LiteralExpr(readValue());
+            case LOGICAL: return new LogicalExpr(readExpr(), readToken(), readExpr());
+            case MATCH: return new MatchExpr(readToken(), readExpr(), readExprs(CaseExpr.class));
+            case SELF: return new SelfExpr(readToken());
+            case STRUCT: return new StructExpr(readToken(), readTokens(), readExprs(AssignmentExpr.class));
+            case UNARY: return new UnaryExpr(readToken(), readExpr());
+            case VARIABLE: return new VariableExpr(readToken());
+            default: throw new IllegalStateException("Unknown expression tag " + tag + ".");
+        }
+    }
+
+    private Stmt readStmt() {
+        byte tag = in.get();
+        switch (tag) {
+            case NONE: return null;
+            case BLOCK: return new BlockStmt(readStmts());
+            case EXPRESSION: return new ExpressionStmt(readExpr());
+            case IF: return new IfStmt(readExpr(), readStmt(), readStmt());
+            case IMPORT: return new ImportStmt(readToken(), readTokens());
+            case RETURN: return new ReturnStmt(readToken(), readExpr());
+            case WHILE: return new WhileStmt(readExpr(), readStmt());
+            default: throw new IllegalStateException("Unknown statement tag " + tag + ".");
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.bifffly.canterbury.cache;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.bifffly.canterbury.cache.AstFormat.*;
+
+// Serializes a parsed, not yet resolved tree in the format read back by AstReader
+class AstWriter implements ExprVisitor<Void>, StmtVisitor<Void> {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    byte[] write(List<Stmt> stmts) {
+        writeInt(MAGIC);
+        writeInt(VERSION);
+        writeStmts(stmts);
+        return out.toByteArray();
+    }
+
+    private void writeExpr(Expr expr) {
+        if (expr == null) {
+            tag(NONE);
+        } else {
+            expr.accept(this);
+        }
+    }
+
+    private void writeStmt(Stmt stmt) {
+        if (stmt == null) {
+            tag(NONE);
+        } else {
+            stmt.accept(this);
+        }
+    }
+
+    private void writeExprs(List<? extends Expr> exprs) {
+        writeInt(exprs.size());
+        exprs.forEach(this::writeExpr);
+    }
+
+    private void writeStmts(List<Stmt> stmts) {
+        writeInt(stmts.size());
+        stmts.forEach(this::writeStmt);
+    }
+
+    private void writeTokens(List<Token> tokens) {
+        writeInt(tokens.size());
+        tokens.forEach(this::write);
+    }
+
+    private void write(Token token) {
+        out.write(token.getType().ordinal());
+        writeString(token.getLexeme());
+        writeValue(token.getValue());
+        writeInt(token.getLine());
+    }
+
+    private void writeValue(Object value) {
+        if (value == null) {
+            tag(NULL_VALUE);
+        } else if (value instanceof Boolean bool) {
+            tag(bool ? TRUE_VALUE : FALSE_VALUE);
+        } else if (value instanceof Double number) {
+            tag(NUMBER_VALUE);
+            writeLong(Double.doubleToRawLongBits(number));
+        } else {
+            tag(STRING_VALUE);
+            writeString((String) value);
+        }
+    }
+
+    private void writeString(String string) {
+        byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+        writeInt(utf8.length);
+        out.writeBytes(utf8);
+    }
+
+    // Big-endian, as ByteBuffer reads them back by default
+    private void writeInt(int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            out.write(value >>> shift);
+        }
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void tag(byte tag) {
+        out.write(tag);
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        tag(ASSIGNMENT);
+        writeExpr(expr.getTarget());
+        writeExpr(expr.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        tag(BINARY);
+        writeExpr(expr.getLeft());
+        write(expr.getOp());
+        writeExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        tag(CALL);
+        writeExpr(expr.getCallee());
+        write(expr.getBracket());
+        writeExprs(expr.getArgs());
+        return null;
+    }
+
+    @Override
+    public Void visitCaseExpr(CaseExpr expr) {
+        tag(CASE);
+        writeExpr(expr.getCondition());
+        writeExpr(expr.getThen());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncExpr(FuncExpr expr) {
+        tag(FUNC);
+        write(expr.getDecl());
+        writeTokens(expr.getParams());
+        writeStmt(expr.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        tag(GET);
+        writeExpr(expr.getExpr());
+        write(expr.getIdentifier());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        tag(GROUPING);
+        writeExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        tag(LITERAL);
+        writeValue(expr.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        tag(LOGICAL);
+        writeExpr(expr.getLeft());
+        write(expr.getOp());
+        writeExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitMatchExpr(MatchExpr expr) {
+        tag(MATCH);
+        write(expr.getToken());
+        writeExpr(expr.getExpr());
+        writeExprs(expr.getCases());
+        return null;
+    }
+
+    @Override
+    public Void visitSelfExpr(SelfExpr expr) {
+        tag(SELF);
+        write(expr.getSelf());
+        return null;
+    }
+
+    @Override
+    public Void visitStructExpr(StructExpr expr) {
+        tag(STRUCT);
+        write(expr.getDecl());
+        writeTokens(expr.getParams());
+        writeExprs(expr.getBody());
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        tag(UNARY);
+        write(expr.getOp());
+        writeExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        tag(VARIABLE);
+        write(expr.getIdentifier());
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        tag(BLOCK);
+        writeStmts(stmt.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        tag(EXPRESSION);
+        writeExpr(stmt.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt stmt) {
+        tag(IF);
+        writeExpr(stmt.getCondition());
+        writeStmt(stmt.getThenBranch());
+        writeStmt(stmt.getElseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        tag(IMPORT);
+        write(stmt.getModule());
+        writeTokens(stmt.getImports());
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt stmt) {
+        tag(RETURN);
+        write(stmt.getToken());
+        writeExpr(stmt.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt stmt) {
+        tag(WHILE);
+        writeExpr(stmt.getCondition());
+        writeStmt(stmt.getBody());
+        return null;
+    }
+}
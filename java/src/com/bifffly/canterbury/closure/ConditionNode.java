@@ -0,0 +1,10 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+
+// An expression used for its truth, as the condition of a branch or loop
+@FunctionalInterface
+public interface ConditionNode {
+    boolean execute(Environment env, Cell[] upvalues);
+}
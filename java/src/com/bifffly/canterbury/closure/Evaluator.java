@@ -0,0 +1,78 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.modules.StandardLibrary;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+
+import java.util.List;
+
+/**
+ * Runs programs by compiling them to a tree of nodes first, rather than walking the syntax tree
+ * the way the Interpreter does. Each node is linked to its children when it is compiled, so running
+ * it involves no visitor dispatch or switch on the operator. Programs see the same values, scopes
+ * and errors as under the Interpreter.
+ */
+public class Evaluator {
+    private final Environment globals = new Environment();
+    // The value of '_' inside a top-level match
+    Object matched;
+    // The call a statement returned TAIL_CALL for, which the enclosing run makes next
+    Node tailBody;
+    Environment tailFrame;
+    Cell[] tailUpvalues;
+
+    public Evaluator() {
+        StandardLibrary stdlib = new StandardLibrary(globals);
+        stdlib.getModules().forEach((module) -> globals.define(module.getName(), module));
+    }
+
+    Environment getGlobals() {
+        return globals;
+    }
+
+    public void interpret(List<Stmt> stmts) {
+        try {
+            Node program = new NodeCompiler(this).compile(stmts);
+            program.execute(globals, new Cell[0]);
+        } catch (RuntimeError e) {
+            recover();
+            Canterbury.runtimeError(e);
+        } catch (StackOverflowError e) {
+            // Calls recurse on the Java stack here, as they do in the Interpreter
+            recover();
+            Canterbury.runtimeError(new RuntimeError(null, "Stack overflow, run with --vm for deeper recursion."));
+        }
+    }
+
+    private void recover() {
+        tailBody = null;
+        tailFrame = null;
+        tailUpvalues = null;
+        matched = null;
+    }
+
+    // Tail calls made by the body are run here in turn, so tail recursion doesn't grow the stack
+    Object run(Node body, Environment frame, Cell[] upvalues) {
+        Object result = body.execute(frame, upvalues);
+        while (result == Node.TAIL_CALL) {
+            body = tailBody;
+            frame = tailFrame;
+            upvalues = tailUpvalues;
+            tailBody = null;
+            tailFrame = null;
+            tailUpvalues = null;
+            result = body.execute(frame, upvalues);
+        }
+        return result == Node.NORMAL ? null : result;
+    }
+
+    Object tailCall(Node body, Environment frame, Cell[] upvalues) {
+        tailBody = body;
+        tailFrame = frame;
+        tailUpvalues = upvalues;
+        return Node.TAIL_CALL;
+    }
+}
@@ -0,0 +1,91 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.object.Bindable;
+import com.bifffly.canterbury.object.Callable;
+import com.bifffly.canterbury.object.Instance;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.tokens.Token;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// A function whose body was compiled to nodes, together with the variables it closes over
+@AllArgsConstructor
+@Getter
+public class Lambda implements Callable, Bindable {
+    private final Evaluator evaluator;
+    private final FuncExpr expr;
+    private final Node body;
+    private final Cell[] upvalues;
+
+    @Override
+    public boolean isUnbound() {
+        return expr.isMethod() && upvalues == null;
+    }
+
+    @Override
+    public Lambda bind(Instance instance) {
+        return new Lambda(evaluator, expr, body, instance.capture(expr.getCaptures()));
+    }
+
+    public Environment frame() {
+        return new Environment(null, expr.getSlots());
+    }
+
+    @Override
+    public int arity() {
+        return expr.getParams().size();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        return call(interpreter, args.toArray());
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] args) {
+        Environment local = frame();
+        for (int i = 0; i < arity(); i++) {
+            local.define(i, args[i]);
+        }
+        return evaluator.run(body, local, upvalues);
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return evaluator.run(body, frame(), upvalues);
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object a) {
+        Environment local = frame();
+        local.define(0, a);
+        return evaluator.run(body, local, upvalues);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a, Object b) {
+        Environment local = frame();
+        local.define(0, a);
+        local.define(1, b);
+        return evaluator.run(body, local, upvalues);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        Environment local = frame();
+        local.define(0, a);
+        local.define(1, b);
+        local.define(2, c);
+        return evaluator.run(body, local, upvalues);
+    }
+
+    @Override
+    public String toString() {
+        return "<func " + expr.getParams().stream().map(Token::getLexeme).toList() + ">";
+    }
+}
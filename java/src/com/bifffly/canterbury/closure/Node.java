@@ -0,0 +1,18 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+
+/**
+ * A piece of a program compiled ahead of running it, linked straight to the nodes it runs in turn.
+ * Expressions return their value. Statements return NORMAL to carry on with the next statement,
+ * TAIL_CALL once a tail call has been set up for the enclosing function to make, or otherwise
+ * the value the enclosing function returns.
+ */
+@FunctionalInterface
+public interface Node {
+    Object NORMAL = new Object();
+    Object TAIL_CALL = new Object();
+
+    Object execute(Environment env, Cell[] upvalues);
+}
@@ -0,0 +1,750 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.modules.Module;
+import com.bifffly.canterbury.object.Callable;
+import com.bifffly.canterbury.object.InlineCache;
+import com.bifffly.canterbury.object.Instance;
+import com.bifffly.canterbury.object.Struct;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Capture;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.MatchTable;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.CountedLoop;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.bifffly.canterbury.interpreter.Interpreter.bool;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkIntOperand;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkIntOperands;
+import static com.bifffly.canterbury.interpreter.Interpreter.isEqual;
+import static com.bifffly.canterbury.interpreter.Interpreter.isIdentical;
+import static com.bifffly.canterbury.interpreter.Interpreter.matches;
+import static com.bifffly.canterbury.tokens.TokenType.*;
+
+/**
+ * Compiles resolved statements to nodes. Every choice the Interpreter makes from the shape of the
+ * tree, such as which operator a binary expression applies or where a variable lives, is made here
+ * once, leaving a node that does only that one thing. Arithmetic compiles to NumberNodes and
+ * conditions to ConditionNodes, so that values passed between them are never boxed.
+ */
+public class NodeCompiler implements ExprVisitor<Node>, StmtVisitor<Node> {
+    private static final Node SKIP = (env, upvalues) -> Node.NORMAL;
+
+    // A call made on a callee that has already been evaluated
+    @FunctionalInterface
+    private interface Invoke {
+        Object invoke(Object callee, Environment env, Cell[] upvalues);
+    }
+
+    // The cases of a match, with the subject already evaluated and bound to '_'
+    private static class Cases {
+        private final MatchTable[] tables;
+        private final Node[] conditions;
+        private final Node[] thens;
+
+        private Cases(MatchTable[] tables, Node[] conditions, Node[] thens) {
+            this.tables = tables;
+            this.conditions = conditions;
+            this.thens = thens;
+        }
+
+        private Object select(Object o, Environment env, Cell[] upvalues) {
+            int i = 0;
+            while (i < thens.length) {
+                MatchTable table = tables[i];
+                if (table != null) {
+                    int index = table.lookup(o);
+                    if (index >= 0) {
+                        return thens[i + index].execute(env, upvalues);
+                    }
+                    i = table.getEnd();
+                    continue;
+                }
+                Object compare = conditions[i].execute(env, upvalues);
+                if (matches(o, compare)) {
+                    return thens[i].execute(env, upvalues);
+                }
+                i++;
+            }
+            return null;
+        }
+    }
+
+    private final Evaluator evaluator;
+    private final Environment globals;
+
+    public NodeCompiler(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        this.globals = evaluator.getGlobals();
+    }
+
+    public Node compile(List<Stmt> stmts) {
+        Node[] nodes = new Node[stmts.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compileStmt(stmts.get(i));
+        }
+        if (nodes.length == 0) {
+            return SKIP;
+        }
+        if (nodes.length == 1) {
+            return nodes[0];
+        }
+        return (env, upvalues) -> {
+            for (Node node : nodes) {
+                Object result = node.execute(env, upvalues);
+                if (result != Node.NORMAL) {
+                    return result;
+                }
+            }
+            return Node.NORMAL;
+        };
+    }
+
+    private Node compileStmt(Stmt stmt) {
+        return (Node) stmt.accept(this);
+    }
+
+    private Node compileExpr(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private Node[] compile(List<Expr> exprs, int size) {
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; i++) {
+            nodes[i] = compileExpr(exprs.get(i));
+        }
+        return nodes;
+    }
+
+    private static boolean isArithmetic(Token op) {
+        switch (op.getType()) {
+            case PLUS:
+            case MINUS:
+            case SLASH:
+            case STAR: return true;
+            default: return false;
+        }
+    }
+
+    private NumberNode number(Expr expr, Token op, String message) {
+        if (expr instanceof LiteralExpr literal && literal.getValue() instanceof Double d) {
+            double value = d;
+            return (env, upvalues) -> value;
+        }
+        if (expr instanceof GroupingExpr grouping) {
+            return number(grouping.getExpr(), op, message);
+        }
+        if (expr instanceof BinaryExpr binary && isArithmetic(binary.getOp())) {
+            return arithmetic(binary);
+        }
+        if (expr instanceof UnaryExpr unary && unary.getOp().getType() == MINUS) {
+            NumberNode operand = number(unary.getExpr(), unary.getOp(), "Operand must be a number.");
+            return (env, upvalues) -> -operand.execute(env, upvalues);
+        }
+
+        Node node = compileExpr(expr);
+        return (env, upvalues) -> {
+            if (node.execute(env, upvalues) instanceof Double d) {
+                return d;
+            }
+            throw new RuntimeError(op, message);
+        };
+    }
+
+    // The left operand of arithmetic or a comparison. Like the other binary operators, both sides are
+    // evaluated before either is checked, so a left operand that is not a number still runs the right
+    private NumberNode left(BinaryExpr expr, NumberNode right) {
+        if (isUnboxed(expr.getLeft())) {
+            return number(expr.getLeft(), expr.getOp(), "Operands must be numbers.");
+        }
+        Node node = compileExpr(expr.getLeft());
+        Token op = expr.getOp();
+        return (env, upvalues) -> {
+            if (node.execute(env, upvalues) instanceof Double d) {
+                return d;
+            }
+            right.execute(env, upvalues);
+            throw new RuntimeError(op, "Operands must be numbers.");
+        };
+    }
+
+    // Whether number computes the expression itself rather than checking the value of its node
+    private static boolean isUnboxed(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal.getValue() instanceof Double;
+        }
+        if (expr instanceof GroupingExpr grouping) {
+            return isUnboxed(grouping.getExpr());
+        }
+        if (expr instanceof BinaryExpr binary) {
+            return isArithmetic(binary.getOp());
+        }
+        return expr instanceof UnaryExpr unary && unary.getOp().getType() == MINUS;
+    }
+
+    private NumberNode arithmetic(BinaryExpr expr) {
+        NumberNode right = number(expr.getRight(), expr.getOp(), "Operands must be numbers.");
+        NumberNode left = left(expr, right);
+        switch (expr.getOp().getType()) {
+            case PLUS: return (env, upvalues) -> left.execute(env, upvalues) + right.execute(env, upvalues);
+            case MINUS: return (env, upvalues) -> left.execute(env, upvalues) - right.execute(env, upvalues);
+            case SLASH: return (env, upvalues) -> left.execute(env, upvalues) / right.execute(env, upvalues);
+            default: return (env, upvalues) -> left.execute(env, upvalues) * right.execute(env, upvalues);
+        }
+    }
+
+    private ConditionNode condition(Expr expr) {
+        if (expr instanceof GroupingExpr grouping) {
+            return condition(grouping.getExpr());
+        }
+        if (expr instanceof LiteralExpr literal) {
+            boolean value = bool(literal.getValue());
+            return (env, upvalues) -> value;
+        }
+        if (expr instanceof BinaryExpr binary) {
+            ConditionNode comparison = comparison(binary);
+            if (comparison != null) {
+                return comparison;
+            }
+        }
+        if (expr instanceof UnaryExpr unary && unary.getOp().getType() == BANG) {
+            ConditionNode operand = condition(unary.getExpr());
+            return (env, upvalues) -> !operand.execute(env, upvalues);
+        }
+        // Both sides are evaluated whatever the left one comes to
+        if (expr instanceof LogicalExpr logical) {
+            ConditionNode left = condition(logical.getLeft());
+            ConditionNode right = condition(logical.getRight());
+            if (logical.getOp().getType() == OR) {
+                return (env, upvalues) -> left.execute(env, upvalues) | right.execute(env, upvalues);
+            }
+            return (env, upvalues) -> left.execute(env, upvalues) & right.execute(env, upvalues);
+        }
+
+        Node node = compileExpr(expr);
+        return (env, upvalues) -> bool(node.execute(env, upvalues));
+    }
+
+    // The comparison a binary expression makes, or null if it is not one
+    private ConditionNode comparison(BinaryExpr expr) {
+        Token op = expr.getOp();
+        switch (op.getType()) {
+            case LESSER:
+            case LESSER_EQUAL:
+            case GREATER:
+            case GREATER_EQUAL:
+                break;
+            case EQUAL:
+            case UNEQUAL: {
+                Node left = compileExpr(expr.getLeft());
+                Node right = compileExpr(expr.getRight());
+                if (op.getType() == EQUAL) {
+                    return (env, upvalues) -> isEqual(left.execute(env, upvalues), right.execute(env, upvalues));
+                }
+                return (env, upvalues) -> !isEqual(left.execute(env, upvalues), right.execute(env, upvalues));
+            }
+            default:
+                return null;
+        }
+
+        NumberNode right = number(expr.getRight(), op, "Operands must be numbers.");
+        NumberNode left = left(expr, right);
+        switch (op.getType()) {
+            case LESSER: return (env, upvalues) -> left.execute(env, upvalues) < right.execute(env, upvalues);
+            case LESSER_EQUAL: return (env, upvalues) -> left.execute(env, upvalues) <= right.execute(env, upvalues);
+            case GREATER: return (env, upvalues) -> left.execute(env, upvalues) > right.execute(env, upvalues);
+            default: return (env, upvalues) -> left.execute(env, upvalues) >= right.execute(env, upvalues);
+        }
+    }
+
+    @Override
+    public Node visitAssignmentExpr(AssignmentExpr expr) {
+        Node value = compileExpr(expr.getValue());
+        if (expr.getTarget() instanceof VariableExpr varExpr) {
+            if (varExpr.getDepth() < 0) {
+                String name = varExpr.getIdentifier().getLexeme();
+                return (env, upvalues) -> {
+                    Object o = value.execute(env, upvalues);
+                    globals.define(name, o);
+                    return o;
+                };
+            }
+            int depth = varExpr.getDepth();
+            int slot = varExpr.getSlot();
+            return (env, upvalues) -> {
+                Object o = value.execute(env, upvalues);
+                env.assignAt(depth, slot, o);
+                return o;
+            };
+        }
+        if (expr.getTarget() instanceof GetExpr get && get.getExpr() instanceof SelfExpr self) {
+            Node instance = visitSelfExpr(self);
+            Token identifier = get.getIdentifier();
+            return (env, upvalues) -> {
+                Object o = value.execute(env, upvalues);
+                ((Instance) instance.execute(env, upvalues)).define(identifier, o);
+                return o;
+            };
+        }
+        return value;
+    }
+
+    @Override
+    public Node visitBinaryExpr(BinaryExpr expr) {
+        if (isArithmetic(expr.getOp())) {
+            NumberNode arithmetic = arithmetic(expr);
+            return (env, upvalues) -> arithmetic.execute(env, upvalues);
+        }
+        ConditionNode comparison = comparison(expr);
+        if (comparison != null) {
+            return (env, upvalues) -> comparison.execute(env, upvalues);
+        }
+
+        Token op = expr.getOp();
+        Node left = compileExpr(expr.getLeft());
+        Node right = compileExpr(expr.getRight());
+        switch (op.getType()) {
+            case BIT_OR: return (env, upvalues) -> {
+                Object a = left.execute(env, upvalues);
+                Object b = right.execute(env, upvalues);
+                checkIntOperands(op, a, b);
+                return ((Double) a).intValue() | ((Double) b).intValue();
+            };
+            case BIT_AND: return (env, upvalues) -> {
+                Object a = left.execute(env, upvalues);
+                Object b = right.execute(env, upvalues);
+                checkIntOperands(op, a, b);
+                return ((Double) a).intValue() & ((Double) b).intValue();
+            };
+            case IS: return (env, upvalues) -> isIdentical(left.execute(env, upvalues), right.execute(env, upvalues));
+            default: return (env, upvalues) -> {
+                left.execute(env, upvalues);
+                right.execute(env, upvalues);
+                return null;
+            };
+        }
+    }
+
+    @Override
+    public Node visitCallExpr(CallExpr expr) {
+        Node call = expr.getCallee() instanceof GetExpr get ? method(expr, get) : call(expr);
+        Token bracket = expr.getBracket();
+        return (env, upvalues) -> {
+            try {
+                return call.execute(env, upvalues);
+            } catch (RuntimeError e) {
+                throw e.at(bracket);
+            }
+        };
+    }
+
+    private Node call(CallExpr expr) {
+        Node callee = compileExpr(expr.getCallee());
+        Invoke invoke = invoke(expr);
+        return (env, upvalues) -> invoke.invoke(callee.execute(env, upvalues), env, upvalues);
+    }
+
+    // Methods called straight off an instance are invoked against it rather than bound first
+    private Node method(CallExpr expr, GetExpr get) {
+        Node object = compileExpr(get.getExpr());
+        Invoke invoke = invoke(expr);
+        InlineCache cache = get.getCache();
+        Node[] args = compile(expr.getArgs(), expr.getArgs().size());
+        Token bracket = expr.getBracket();
+        boolean tail = expr.isTail();
+        return (env, upvalues) -> {
+            Object o = object.execute(env, upvalues);
+            if (!(o instanceof Instance instance)) {
+                return invoke.invoke(property(o, get), env, upvalues);
+            }
+            if (!(instance.getUnbound(cache) instanceof Lambda method) || !method.isUnbound()) {
+                return invoke.invoke(instance.getUnbound(cache), env, upvalues);
+            }
+            if (args.length != method.arity()) {
+                for (Node arg : args) {
+                    arg.execute(env, upvalues);
+                }
+                throw new RuntimeError(bracket, "Expected " + method.arity() + "args, received " + args.length + ".");
+            }
+            Environment frame = method.frame();
+            for (int i = 0; i < args.length; i++) {
+                frame.define(i, args[i].execute(env, upvalues));
+            }
+            Cell[] captured = instance.capture(method.getExpr().getCaptures());
+            if (tail) {
+                return evaluator.tailCall(method.getBody(), frame, captured);
+            }
+            return evaluator.run(method.getBody(), frame, captured);
+        };
+    }
+
+    // Small argument counts are passed directly so that no argument array or list is built
+    private Invoke invoke(CallExpr expr) {
+        Node[] args = compile(expr.getArgs(), expr.getArgs().size());
+        Token bracket = expr.getBracket();
+        Invoke invoke;
+        switch (args.length) {
+            case 0:
+                invoke = (callee, env, upvalues) -> callable(bracket, callee, 0).call0(null);
+                break;
+            case 1:
+                invoke = (callee, env, upvalues) -> {
+                    Object a = args[0].execute(env, upvalues);
+                    return callable(bracket, callee, 1).call1(null, a);
+                };
+                break;
+            case 2:
+                invoke = (callee, env, upvalues) -> {
+                    Object a = args[0].execute(env, upvalues);
+                    Object b = args[1].execute(env, upvalues);
+                    return callable(bracket, callee, 2).call2(null, a, b);
+                };
+                break;
+            case 3:
+                invoke = (callee, env, upvalues) -> {
+                    Object a = args[0].execute(env, upvalues);
+                    Object b = args[1].execute(env, upvalues);
+                    Object c = args[2].execute(env, upvalues);
+                    return callable(bracket, callee, 3).call3(null, a, b, c);
+                };
+                break;
+            default:
+                invoke = (callee, env, upvalues) -> {
+                    Object[] values = new Object[args.length];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = args[i].execute(env, upvalues);
+                    }
+                    return callable(bracket, callee, values.length).call(null, values);
+                };
+        }
+        if (!expr.isTail()) {
+            return invoke;
+        }
+        Invoke call = invoke;
+        return (callee, env, upvalues) -> {
+            if (!(callee instanceof Lambda function) || function.arity() != args.length) {
+                return call.invoke(callee, env, upvalues);
+            }
+            Environment frame = function.frame();
+            for (int i = 0; i < args.length; i++) {
+                frame.define(i, args[i].execute(env, upvalues));
+            }
+            return evaluator.tailCall(function.getBody(), frame, function.getUpvalues());
+        };
+    }
+
+    private static Callable callable(Token bracket, Object callee, int argc) {
+        if (!(callee instanceof Callable callable)) {
+            throw new RuntimeError(bracket, "Expected callable object.");
+        }
+        if (argc != callable.arity()) {
+            throw new RuntimeError(bracket, "Expected " + callable.arity() + "args, received " + argc + ".");
+        }
+        return callable;
+    }
+
+    @Override
+    public Node visitCaseExpr(CaseExpr expr) {
+        return compileExpr(expr.getThen());
+    }
+
+    @Override
+    public Node visitFuncExpr(FuncExpr expr) {
+        Node body = compile(expr.getBody().getStatements());
+        List<Capture> captures = expr.getCaptures();
+        return (env, upvalues) -> new Lambda(evaluator, expr, body, env.capture(captures, upvalues));
+    }
+
+    @Override
+    public Node visitGetExpr(GetExpr expr) {
+        Node object = compileExpr(expr.getExpr());
+        return (env, upvalues) -> property(object.execute(env, upvalues), expr);
+    }
+
+    private static Object property(Object o, GetExpr expr) {
+        if (o instanceof Instance instance) {
+            return instance.get(expr.getCache());
+        }
+        if (o instanceof Module module) {
+            return module.get(expr.getIdentifier());
+        }
+        throw new RuntimeError(expr.getIdentifier(), "Cannot retrieve property.");
+    }
+
+    @Override
+    public Node visitGroupingExpr(GroupingExpr expr) {
+        return compileExpr(expr.getExpr());
+    }
+
+    @Override
+    public Node visitLiteralExpr(LiteralExpr expr) {
+        Object value = expr.getValue();
+        return (env, upvalues) -> value;
+    }
+
+    @Override
+    public Node visitLogicalExpr(LogicalExpr expr) {
+        ConditionNode condition = condition(expr);
+        return (env, upvalues) -> condition.execute(env, upvalues);
+    }
+
+    @Override
+    public Node visitMatchExpr(MatchExpr expr) {
+        Node subject = compileExpr(expr.getExpr());
+        List<CaseExpr> caseExprs = expr.getCases();
+        Node[] conditions = new Node[caseExprs.size()];
+        Node[] thens = new Node[caseExprs.size()];
+        for (int i = 0; i < caseExprs.size(); i++) {
+            // Cases a table covers are never tested one by one
+            if (!(caseExprs.get(i).getCondition() instanceof LiteralExpr literal) || literal.getValue() instanceof Boolean) {
+                conditions[i] = compileExpr(caseExprs.get(i).getCondition());
+            }
+            thens[i] = compileExpr(caseExprs.get(i));
+        }
+        Cases cases = new Cases(expr.getTables(), conditions, thens);
+
+        int slot = expr.getSlot();
+        if (slot >= 0) {
+            return (env, upvalues) -> {
+                Object o = subject.execute(env, upvalues);
+                env.define(slot, o);
+                return cases.select(o, env, upvalues);
+            };
+        }
+        return (env, upvalues) -> {
+            Object o = subject.execute(env, upvalues);
+            Object enclosing = evaluator.matched;
+            evaluator.matched = o;
+            try {
+                return cases.select(o, env, upvalues);
+            } finally {
+                evaluator.matched = enclosing;
+            }
+        };
+    }
+
+    @Override
+    public Node visitSelfExpr(SelfExpr expr) {
+        return variable(expr.getDepth(), expr.getSlot(), expr.getUpvalue(), expr.getSelf());
+    }
+
+    @Override
+    public Node visitStructExpr(StructExpr expr) {
+        Map<String, Node> attributes = new LinkedHashMap<>();
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            if (assignmentExpr.getTarget() instanceof VariableExpr varExpr) {
+                // Methods capture their variables when bound to an instance
+                Node value = assignmentExpr.getValue() instanceof FuncExpr func
+                    ? method(func)
+                    : compileExpr(assignmentExpr.getValue());
+                attributes.put(varExpr.getIdentifier().getLexeme(), value);
+            }
+        }
+        return (env, upvalues) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            attributes.forEach((name, value) -> values.put(name, value.execute(env, upvalues)));
+            return new Struct(expr, values, env, upvalues);
+        };
+    }
+
+    private Node method(FuncExpr func) {
+        Lambda method = new Lambda(evaluator, func, compile(func.getBody().getStatements()), null);
+        return (env, upvalues) -> method;
+    }
+
+    @Override
+    public Node visitUnaryExpr(UnaryExpr expr) {
+        Token op = expr.getOp();
+        switch (op.getType()) {
+            case MINUS: {
+                NumberNode operand = number(expr.getExpr(), op, "Operand must be a number.");
+                return (env, upvalues) -> -operand.execute(env, upvalues);
+            }
+            case BANG: {
+                ConditionNode operand = condition(expr.getExpr());
+                return (env, upvalues) -> !operand.execute(env, upvalues);
+            }
+            case BIT_NEG: {
+                Node operand = compileExpr(expr.getExpr());
+                return (env, upvalues) -> {
+                    Object o = operand.execute(env, upvalues);
+                    checkIntOperand(op, o);
+                    return ~((Double) o).intValue();
+                };
+            }
+            default: {
+                Node operand = compileExpr(expr.getExpr());
+                return (env, upvalues) -> {
+                    operand.execute(env, upvalues);
+                    return null;
+                };
+            }
+        }
+    }
+
+    @Override
+    public Node visitVariableExpr(VariableExpr expr) {
+        if (expr.isMatched() && expr.getDepth() < 0 && expr.getUpvalue() < 0) {
+            return (env, upvalues) -> evaluator.matched;
+        }
+        return variable(expr.getDepth(), expr.getSlot(), expr.getUpvalue(), expr.getIdentifier());
+    }
+
+    private Node variable(int depth, int slot, int upvalue, Token identifier) {
+        if (depth >= 0) {
+            return (env, upvalues) -> env.getAt(depth, slot);
+        }
+        if (upvalue >= 0) {
+            return (env, upvalues) -> upvalues[upvalue].getValue();
+        }
+        return (env, upvalues) -> globals.get(identifier);
+    }
+
+    @Override
+    public Node visitBlockStmt(BlockStmt stmt) {
+        Node body = compile(stmt.getStatements());
+        if (!stmt.isScoped()) {
+            return body;
+        }
+        int slots = stmt.getSlots();
+        return (env, upvalues) -> body.execute(new Environment(env, slots), upvalues);
+    }
+
+    @Override
+    public Node visitExpressionStmt(ExpressionStmt stmt) {
+        Node expr = compileExpr(stmt.getExpr());
+        return (env, upvalues) -> {
+            expr.execute(env, upvalues);
+            return Node.NORMAL;
+        };
+    }
+
+    @Override
+    public Node visitIfStmt(IfStmt stmt) {
+        ConditionNode condition = condition(stmt.getCondition());
+        Node thenBranch = compileStmt(stmt.getThenBranch());
+        Node elseBranch = stmt.getElseBranch() == null ? SKIP : compileStmt(stmt.getElseBranch());
+        return (env, upvalues) -> condition.execute(env, upvalues)
+            ? thenBranch.execute(env, upvalues)
+            : elseBranch.execute(env, upvalues);
+    }
+
+    @Override
+    public Node visitImportStmt(ImportStmt stmt) {
+        Token moduleToken = stmt.getModule();
+        List<Token> imports = stmt.getImports();
+        int[] slots = stmt.getSlots();
+        return (env, upvalues) -> {
+            if (globals.get(moduleToken) instanceof Module module) {
+                for (int i = 0; i < imports.size(); i++) {
+                    Token token = imports.get(i);
+                    if (slots == null) {
+                        globals.define(token.getLexeme(), module.get(token));
+                    } else {
+                        env.define(slots[i], module.get(token));
+                    }
+                }
+            }
+            return Node.NORMAL;
+        };
+    }
+
+    @Override
+    public Node visitReturnStmt(ReturnStmt stmt) {
+        if (stmt.getValue() == null) {
+            return (env, upvalues) -> null;
+        }
+        return compileExpr(stmt.getValue());
+    }
+
+    @Override
+    public Node visitWhileStmt(WhileStmt stmt) {
+        ConditionNode condition = condition(stmt.getCondition());
+        Node body = compileStmt(stmt.getBody());
+        Node loop = (env, upvalues) -> {
+            while (condition.execute(env, upvalues)) {
+                Object result = body.execute(env, upvalues);
+                if (result != Node.NORMAL) {
+                    return result;
+                }
+            }
+            return Node.NORMAL;
+        };
+        return stmt.getCounted() == null ? loop : countedLoop(stmt.getCounted(), loop);
+    }
+
+    // Whether a counted loop goes on with its counter at the given value
+    @FunctionalInterface
+    private interface Continuation {
+        boolean test(double i, Environment env, Cell[] upvalues);
+    }
+
+    // The counter is kept as a double and only stored to its slot when something could read it there
+    private Node countedLoop(CountedLoop counted, Node loop) {
+        int depth = counted.getVariable().getDepth();
+        int slot = counted.getVariable().getSlot();
+        NumberNode bound = number(counted.getBound(), counted.getOp(), "Operands must be numbers.");
+        Continuation continuation;
+        switch (counted.getOp().getType()) {
+            case LESSER: continuation = (i, env, upvalues) -> i < bound.execute(env, upvalues); break;
+            case LESSER_EQUAL: continuation = (i, env, upvalues) -> i <= bound.execute(env, upvalues); break;
+            case GREATER: continuation = (i, env, upvalues) -> i > bound.execute(env, upvalues); break;
+            default: continuation = (i, env, upvalues) -> i >= bound.execute(env, upvalues); break;
+        }
+        Node body = compile(counted.getBody());
+        double step = counted.getStep();
+        boolean read = counted.isRead();
+        return (env, upvalues) -> {
+            if (!(env.getAt(depth, slot) instanceof Double start)) {
+                return loop.execute(env, upvalues);
+            }
+            boolean store = read || env.isCaptured(depth, slot);
+            double i = start;
+            try {
+                while (continuation.test(i, env, upvalues)) {
+                    Object result = body.execute(env, upvalues);
+                    if (result != Node.NORMAL) {
+                        return result;
+                    }
+                    i += step;
+                    if (store) {
+                        env.assignAt(depth, slot, i);
+                    }
+                }
+            } finally {
+                if (!store) {
+                    env.assignAt(depth, slot, i);
+                }
+            }
+            return Node.NORMAL;
+        };
+    }
+}
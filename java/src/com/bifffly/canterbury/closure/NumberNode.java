@@ -0,0 +1,10 @@
+package com.bifffly.canterbury.closure;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+
+// An expression known to produce a number, which nested arithmetic passes along unboxed
+@FunctionalInterface
+public interface NumberNode {
+    double execute(Environment env, Cell[] upvalues);
+}
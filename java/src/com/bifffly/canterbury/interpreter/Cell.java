@@ -0,0 +1,13 @@
+package com.bifffly.canterbury.interpreter;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+// A variable shared between its scope and the closures that captured it
+@AllArgsConstructor
+@Getter
+@Setter
+public class Cell {
+    private Object value;
+}
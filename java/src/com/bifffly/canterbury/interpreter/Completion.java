@@ -0,0 +1,9 @@
+package com.bifffly.canterbury.interpreter;
+
+// How the most recently executed statement finished; anything but NORMAL unwinds enclosing statements
+public enum Completion {
+    NORMAL,
+    RETURN,
+    // A call in tail position, left for the enclosing function call to run in its place
+    TAIL_CALL;
+}
@@ -1,28 +1,45 @@
 package com.bifffly.canterbury.interpreter;
 
+import com.bifffly.canterbury.parser.expr.Capture;
 import com.bifffly.canterbury.tokens.Token;
 import lombok.EqualsAndHashCode;
 
 import java.util.HashMap;
+import java.util.List;
 
 @EqualsAndHashCode
 public class Environment {
     private final Environment parent;
     private final HashMap<String, Object> env;
+    // Scopes opened by the resolver bind by slot rather than by name
+    private final Object[] slots;
 
     public Environment() {
         this.parent = null;
         this.env = new HashMap<>();
+        this.slots = null;
     }
 
     public Environment(Environment parent) {
         this.parent = parent;
         this.env = new HashMap<>();
+        this.slots = null;
     }
 
     public Environment(Environment parent, HashMap<String, Object> env) {
         this.parent = parent;
         this.env = env;
+        this.slots = null;
+    }
+
+    public Environment(Environment parent, int size) {
+        this.parent = parent;
+        this.env = null;
+        this.slots = new Object[size];
+    }
+
+    public Environment getParent() {
+        return parent;
     }
 
     public HashMap<String, Object> getEnv() {
@@ -33,12 +50,16 @@ public class Environment {
         env.put(identifier, value);
     }
 
+    public void define(int slot, Object value) {
+        slots[slot] = value;
+    }
+
     public void undefine(String identfier) {
         env.remove(identfier);
     }
 
     public Object get(Token identifier) {
-        if (env.containsKey(identifier.getLexeme())) {
+        if (env != null && env.containsKey(identifier.getLexeme())) {
             return env.get(identifier.getLexeme());
         }
         if (parent != null) {
@@ -47,8 +68,51 @@ public class Environment {
         throw new RuntimeError(identifier, "Undefined variable " + identifier.getLexeme() + ".");
     }
 
-    @Override
-    public Environment clone() {
-        return new Environment(parent, (HashMap<String, Object>) env.clone());
+    // Slots captured by a closure hold a Cell shared with it
+    public Object getAt(int depth, int slot) {
+        Object value = ancestor(depth).slots[slot];
+        if (value instanceof Cell cell) {
+            return cell.getValue();
+        }
+        return value;
+    }
+
+    public void assignAt(int depth, int slot, Object value) {
+        Object[] target = ancestor(depth).slots;
+        if (target[slot] instanceof Cell cell) {
+            cell.setValue(value);
+        } else {
+            target[slot] = value;
+        }
+    }
+
+    // Whether a closure has captured the slot and so sees every value written to it
+    public boolean isCaptured(int depth, int slot) {
+        return ancestor(depth).slots[slot] instanceof Cell;
+    }
+
+    public Cell[] capture(List<Capture> captures, Cell[] upvalues) {
+        Cell[] cells = new Cell[captures.size()];
+        for (int i = 0; i < cells.length; i++) {
+            Capture capture = captures.get(i);
+            if (capture.getDepth() < 0) {
+                cells[i] = upvalues[capture.getUpvalue()];
+                continue;
+            }
+            Object[] target = ancestor(capture.getDepth()).slots;
+            if (!(target[capture.getSlot()] instanceof Cell)) {
+                target[capture.getSlot()] = new Cell(target[capture.getSlot()]);
+            }
+            cells[i] = (Cell) target[capture.getSlot()];
+        }
+        return cells;
+    }
+
+    private Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++) {
+            environment = environment.parent;
+        }
+        return environment;
     }
 }
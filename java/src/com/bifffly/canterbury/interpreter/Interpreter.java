@@ -1,6 +1,7 @@
 package com.bifffly.canterbury.interpreter;
 
 import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.jit.Jit;
 import com.bifffly.canterbury.modules.StandardLibrary;
 import com.bifffly.canterbury.object.Callable;
 import com.bifffly.canterbury.object.Function;
@@ -23,17 +24,19 @@ import com.bifffly.canterbury.parser.expr.UnaryExpr;
 import com.bifffly.canterbury.parser.expr.ExprVisitor;
 import com.bifffly.canterbury.parser.expr.VariableExpr;
 import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.CountedLoop;
 import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
 import com.bifffly.canterbury.parser.stmt.IfStmt;
 import com.bifffly.canterbury.parser.stmt.ImportStmt;
 import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.MatchTable;
 import com.bifffly.canterbury.parser.stmt.ReturnStmt;
 import com.bifffly.canterbury.parser.stmt.Stmt;
 import com.bifffly.canterbury.parser.stmt.StmtVisitor;
 import com.bifffly.canterbury.parser.stmt.WhileStmt;
 import com.bifffly.canterbury.tokens.Token;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -42,13 +45,39 @@ import static com.bifffly.canterbury.tokens.TokenType.*;
 public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
     private final Environment globals = new Environment();
     private Environment env = globals;
-    private boolean blockScope = true;
+    private Cell[] upvalues = new Cell[0];
+    private Completion completion = Completion.NORMAL;
+    private Object completionValue = null;
+    private List<Stmt> tailBody;
+    private Environment tailFrame;
+    private Cell[] tailUpvalues;
+    // The value of '_' inside a top-level match
+    private Object matched;
+    // Loop iterations run so far, which the JIT counts towards the heat of the running function
+    private int backEdges = 0;
+    private Jit jit;
 
     public Interpreter() {
-        StandardLibrary stdlib = new StandardLibrary();
+        StandardLibrary stdlib = new StandardLibrary(globals);
         stdlib.getModules().forEach((module) -> globals.define(module.getName(), module));
     }
 
+    public void enableJit() {
+        jit = new Jit(this);
+    }
+
+    public Jit getJit() {
+        return jit;
+    }
+
+    public int getBackEdges() {
+        return backEdges;
+    }
+
+    public Object global(String name) {
+        return globals.getEnv().get(name);
+    }
+
     public Environment getEnv() {
         return env;
     }
@@ -59,10 +88,31 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
                 exec(stmt);
             }
         } catch (RuntimeError e) {
+            recover();
             Canterbury.runtimeError(e);
+        } catch (StackOverflowError e) {
+            // Calls recurse on the Java stack here; the VM keeps its frames on the heap instead
+            recover();
+            Canterbury.runtimeError(new RuntimeError(null, "Stack overflow, run with --vm for deeper recursion."));
         }
     }
 
+    // Leaves the interpreter ready for the next program after an error unwound the one running
+    private void recover() {
+        env = globals;
+        upvalues = new Cell[0];
+        completion = Completion.NORMAL;
+        completionValue = null;
+        tailBody = null;
+        tailFrame = null;
+        tailUpvalues = null;
+        matched = null;
+    }
+
+    public Object evaluate(Expr expr) {
+        return eval(expr);
+    }
+
     private Object eval(Expr expr) {
         return expr.accept(this);
     }
@@ -79,6 +129,9 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
 
             for (Stmt statement : statements) {
                 returnValue = exec(statement);
+                if (completion != Completion.NORMAL) {
+                    break;
+                }
             }
         } finally {
             this.env = parent;
@@ -86,6 +139,34 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         return returnValue;
     }
 
+    // Tail calls made by the body are run here in turn, so tail recursion doesn't grow the stack
+    public Object execFunction(List<Stmt> statements, Environment env, Cell[] upvalues) {
+        Cell[] enclosing = this.upvalues;
+        try {
+            this.upvalues = upvalues;
+            execBlock(statements, env);
+            while (completion == Completion.TAIL_CALL) {
+                List<Stmt> body = tailBody;
+                Environment frame = tailFrame;
+                this.upvalues = tailUpvalues;
+                completion = Completion.NORMAL;
+                tailBody = null;
+                tailFrame = null;
+                tailUpvalues = null;
+                execBlock(body, frame);
+            }
+        } finally {
+            this.upvalues = enclosing;
+        }
+        if (completion != Completion.RETURN) {
+            return null;
+        }
+        Object value = completionValue;
+        completion = Completion.NORMAL;
+        completionValue = null;
+        return value;
+    }
+
     public static String stringify(Object o) {
         if (o == null) {
             return "null";
@@ -103,7 +184,7 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         return o.toString();
     }
 
-    private boolean bool(Object o) {
+    public static boolean bool(Object o) {
         if (o == null) {
             return false;
         }
@@ -113,7 +194,7 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    public static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) {
             return true;
         }
@@ -123,7 +204,12 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         return a.equals(b);
     }
 
-    private boolean isIdentical(Object a, Object b) {
+    // A case holds when its condition equals the matched value, or is a guard that came out true
+    public static boolean matches(Object o, Object compare) {
+        return isEqual(o, compare) || Boolean.TRUE.equals(compare);
+    }
+
+    public static boolean isIdentical(Object a, Object b) {
         if (a == null) {
             return false;
         }
@@ -134,7 +220,7 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         return a == b;
     }
 
-    private void checkIntOperand(Token operator, Object operand) {
+    public static void checkIntOperand(Token operator, Object operand) {
         if (operand instanceof Double d) {
             if (d == Math.rint(d)) {
                 return;
@@ -143,14 +229,14 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         throw new RuntimeError(operator, "Operand must be an integer.");
     }
 
-    private void checkNumberOperand(Token operator, Object operand) {
+    public static void checkNumberOperand(Token operator, Object operand) {
         if (operand instanceof Double) {
             return;
         }
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    private void checkIntOperands(Token operator, Object left, Object right) {
+    public static void checkIntOperands(Token operator, Object left, Object right) {
         if (left instanceof Double doubleLeft && right instanceof Double doubleRight) {
             if (doubleLeft == Math.rint(doubleLeft) && doubleRight == Math.rint(doubleRight)) {
                 return;
@@ -159,7 +245,7 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         throw new RuntimeError(operator, "Operands must be integers.");
     }
 
-    private void checkNumberOperands(Token operator, Object left, Object right) {
+    public static void checkNumberOperands(Token operator, Object left, Object right) {
         if (left instanceof Double && right instanceof Double) {
             return;
         }
@@ -170,45 +256,42 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
     public Object visitAssignmentExpr(AssignmentExpr expr) {
         Object value = eval(expr.getValue());
         if (expr.getTarget() instanceof VariableExpr varExpr) {
-            env.define(varExpr.getIdentifier().getLexeme(), value);
-            if (value instanceof Function func) {
-                func.getEnv().define(varExpr.getIdentifier().getLexeme(), value);
+            if (varExpr.getDepth() < 0) {
+                globals.define(varExpr.getIdentifier().getLexeme(), value);
+            } else {
+                env.assignAt(varExpr.getDepth(), varExpr.getSlot(), value);
             }
         } else if (expr.getTarget() instanceof GetExpr get && get.getExpr() instanceof SelfExpr self) {
-            ((Instance) env.get(self.getSelf())).define(get.getIdentifier(), value);
+            ((Instance) visitSelfExpr(self)).define(get.getIdentifier(), value);
         }
         return value;
     }
 
     @Override
     public Object visitBinaryExpr(BinaryExpr expr) {
-        Object left = eval(expr.getLeft());
-        Object right = eval(expr.getRight());
-
         switch (expr.getOp().getType()) {
-            case BIT_OR:
-            case BIT_AND: checkIntOperands(expr.getOp(), left, right); break;
             case PLUS:
             case MINUS:
             case SLASH:
-            case STAR:
-            case LESSER:
-            case LESSER_EQUAL:
-            case GREATER:
-            case GREATER_EQUAL: checkNumberOperands(expr.getOp(), left, right); break;
+            case STAR: return evalArithmetic(expr);
+            case LESSER: return evalLeft(expr) < evalNumber(expr.getRight(), expr.getOp());
+            case LESSER_EQUAL: return evalLeft(expr) <= evalNumber(expr.getRight(), expr.getOp());
+            case GREATER: return evalLeft(expr) > evalNumber(expr.getRight(), expr.getOp());
+            case GREATER_EQUAL: return evalLeft(expr) >= evalNumber(expr.getRight(), expr.getOp());
         }
 
+        Object left = eval(expr.getLeft());
+        Object right = eval(expr.getRight());
+
         switch (expr.getOp().getType()) {
-            case BIT_OR: return ((Double) left).intValue() | ((Double) right).intValue();
-            case BIT_AND: return ((Double) left).intValue() & ((Double) right).intValue();
-            case PLUS: return (double) left + (double) right;
-            case MINUS: return (double) left - (double) right;
-            case SLASH: return (double) left / (double) right;
-            case STAR: return (double) left * (double) right;
-            case LESSER: return (double) left < (double) right;
-            case LESSER_EQUAL: return (double) left <= (double) right;
-            case GREATER: return (double) left > (double) right;
-            case GREATER_EQUAL: return (double) left >= (double) right;
+            case BIT_OR: {
+                checkIntOperands(expr.getOp(), left, right);
+                return ((Double) left).intValue() | ((Double) right).intValue();
+            }
+            case BIT_AND: {
+                checkIntOperands(expr.getOp(), left, right);
+                return ((Double) left).intValue() & ((Double) right).intValue();
+            }
             case EQUAL: return isEqual(left, right);
             case UNEQUAL: return !isEqual(left, right);
             case IS: return isIdentical(left, right);
@@ -216,20 +299,174 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         }
     }
 
+    // Nested arithmetic stays in unboxed doubles; only the outermost result is boxed
+    private double evalArithmetic(BinaryExpr expr) {
+        double left = evalLeft(expr);
+        double right = evalNumber(expr.getRight(), expr.getOp());
+
+        switch (expr.getOp().getType()) {
+            case PLUS: return left + right;
+            case MINUS: return left - right;
+            case SLASH: return left / right;
+            default: return left * right;
+        }
+    }
+
+    // The left operand of arithmetic or a comparison. Like the other binary operators, both sides are
+    // evaluated before either is checked, so a left operand that is not a number still runs the right
+    private double evalLeft(BinaryExpr expr) {
+        if (isUnboxed(expr.getLeft())) {
+            return evalNumber(expr.getLeft(), expr.getOp());
+        }
+        Object o = eval(expr.getLeft());
+        if (o instanceof Double d) {
+            return d;
+        }
+        evalNumber(expr.getRight(), expr.getOp());
+        throw new RuntimeError(expr.getOp(), "Operands must be numbers.");
+    }
+
+    // Whether evalNumber computes the expression itself rather than checking the value of eval
+    private static boolean isUnboxed(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal.getValue() instanceof Double;
+        }
+        if (expr instanceof GroupingExpr grouping) {
+            return isUnboxed(grouping.getExpr());
+        }
+        if (expr instanceof BinaryExpr binary) {
+            switch (binary.getOp().getType()) {
+                case PLUS:
+                case MINUS:
+                case SLASH:
+                case STAR: return true;
+            }
+        }
+        return expr instanceof UnaryExpr unary && unary.getOp().getType() == MINUS;
+    }
+
+    private double evalNumber(Expr expr, Token op) {
+        return evalNumber(expr, op, "Operands must be numbers.");
+    }
+
+    private double evalNumber(Expr expr, Token op, String message) {
+        if (expr instanceof LiteralExpr literal && literal.getValue() instanceof Double d) {
+            return d;
+        }
+        if (expr instanceof GroupingExpr grouping) {
+            return evalNumber(grouping.getExpr(), op, message);
+        }
+        if (expr instanceof BinaryExpr binary) {
+            switch (binary.getOp().getType()) {
+                case PLUS:
+                case MINUS:
+                case SLASH:
+                case STAR: return evalArithmetic(binary);
+            }
+        }
+        if (expr instanceof UnaryExpr unary && unary.getOp().getType() == MINUS) {
+            return -evalNumber(unary.getExpr(), unary.getOp(), "Operand must be a number.");
+        }
+
+        Object o = eval(expr);
+        if (o instanceof Double d) {
+            return d;
+        }
+        throw new RuntimeError(op, message);
+    }
+
     @Override
     public Object visitCallExpr(CallExpr expr) {
-        Object callee = eval(expr.getCallee());
+        try {
+            return evalCall(expr);
+        } catch (RuntimeError e) {
+            throw e.at(expr.getBracket());
+        }
+    }
 
-        List<Object> args = expr.getArgs().stream().map(this::eval).toList();
+    private Object evalCall(CallExpr expr) {
+        // Methods called straight off an instance are invoked against it rather than bound first
+        if (expr.getCallee() instanceof GetExpr get) {
+            Object o = eval(get.getExpr());
+            if (!(o instanceof Instance instance)) {
+                return call(expr, property(o, get));
+            }
+            Object callee = instance.getUnbound(get.getCache());
+            if (!(callee instanceof Function method) || !method.isUnbound()) {
+                return call(expr, callee);
+            }
+            List<Expr> args = expr.getArgs();
+            if (args.size() != method.arity()) {
+                args.forEach(this::eval);
+                throw new RuntimeError(expr.getBracket(), "Expected " + method.arity() + "args, received " + args.size() + ".");
+            }
+            Environment frame = method.frame();
+            for (int i = 0; i < args.size(); i++) {
+                frame.define(i, eval(args.get(i)));
+            }
+            if (expr.isTail()) {
+                return tailCall(method.getExpr(), frame, instance.capture(method.getExpr().getCaptures()));
+            }
+            return method.invoke(this, instance, frame);
+        }
+        return call(expr, eval(expr.getCallee()));
+    }
 
+    // Small argument counts are passed directly so that no argument array or list is built
+    private Object call(CallExpr expr, Object callee) {
+        List<Expr> args = expr.getArgs();
+        if (expr.isTail() && callee instanceof Function function && function.arity() == args.size()) {
+            Environment frame = function.frame();
+            for (int i = 0; i < args.size(); i++) {
+                frame.define(i, eval(args.get(i)));
+            }
+            return tailCall(function.getExpr(), frame, function.getUpvalues());
+        }
+        switch (args.size()) {
+            case 0:
+                return callable(expr, callee, 0).call0(this);
+            case 1: {
+                Object a = eval(args.get(0));
+                return callable(expr, callee, 1).call1(this, a);
+            }
+            case 2: {
+                Object a = eval(args.get(0));
+                Object b = eval(args.get(1));
+                return callable(expr, callee, 2).call2(this, a, b);
+            }
+            case 3: {
+                Object a = eval(args.get(0));
+                Object b = eval(args.get(1));
+                Object c = eval(args.get(2));
+                return callable(expr, callee, 3).call3(this, a, b, c);
+            }
+            default: {
+                Object[] values = new Object[args.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = eval(args.get(i));
+                }
+                return callable(expr, callee, values.length).call(this, values);
+            }
+        }
+    }
+
+    private Object tailCall(FuncExpr function, Environment frame, Cell[] upvalues) {
+        tailBody = function.getBody().getStatements();
+        tailFrame = frame;
+        tailUpvalues = upvalues;
+        completion = Completion.TAIL_CALL;
+        return null;
+    }
+
+    private static Callable callable(CallExpr expr, Object callee, int argc) {
         if (!(callee instanceof Callable)) {
             throw  new RuntimeError(expr.getBracket(), "Expected callable object.");
         }
         Callable callable = (Callable) callee;
-        if (args.size() != callable.arity()) {
-            throw new RuntimeError(expr.getBracket(), "Expected " + callable.arity() + "args, received " + args.size() + ".");
+        if (argc != callable.arity()) {
+            throw new RuntimeError(expr.getBracket(), "Expected " + callable.arity() + "args, received " + argc + ".");
         }
-        return callable.call(this, args);
+        return callable;
     }
 
     @Override
@@ -239,14 +476,17 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
 
     @Override
     public Object visitFuncExpr(FuncExpr expr) {
-        return new Function(expr, env.clone());
+        return new Function(expr, env.capture(expr.getCaptures(), upvalues));
     }
 
     @Override
     public Object visitGetExpr(GetExpr expr) {
-        Object o = eval(expr.getExpr());
+        return property(eval(expr.getExpr()), expr);
+    }
+
+    private Object property(Object o, GetExpr expr) {
         if (o instanceof Instance instance) {
-            return instance.get(expr.getIdentifier());
+            return instance.get(expr.getCache());
         }
         if (o instanceof Module module) {
             return module.get(expr.getIdentifier());
@@ -279,45 +519,78 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
     @Override
     public Object visitMatchExpr(MatchExpr expr) {
         Object o = eval(expr.getExpr());
-        env.define("_", o);
-        for (CaseExpr caseExpr: expr.getCases()) {
-            Object compare = eval(caseExpr.getCondition());
-            if (bool(compare) || isEqual(o, compare)) {
-                return eval(caseExpr);
+        if (expr.getSlot() >= 0) {
+            env.define(expr.getSlot(), o);
+            return match(expr, o);
+        }
+        Object enclosing = matched;
+        matched = o;
+        try {
+            return match(expr, o);
+        } finally {
+            matched = enclosing;
+        }
+    }
+
+    private Object match(MatchExpr expr, Object o) {
+        List<CaseExpr> cases = expr.getCases();
+        MatchTable[] tables = expr.getTables();
+        int i = 0;
+        while (i < cases.size()) {
+            MatchTable table = tables[i];
+            if (table != null) {
+                int index = table.lookup(o);
+                if (index >= 0) {
+                    return eval(cases.get(i + index));
+                }
+                i = table.getEnd();
+                continue;
+            }
+            Object compare = eval(cases.get(i).getCondition());
+            if (matches(o, compare)) {
+                return eval(cases.get(i));
             }
+            i++;
         }
-        env.undefine("_");
         return null;
     }
 
     @Override
     public Object visitSelfExpr(SelfExpr expr) {
-        return env.get(expr.getSelf());
+        if (expr.getDepth() >= 0) {
+            return env.getAt(expr.getDepth(), expr.getSlot());
+        }
+        if (expr.getUpvalue() >= 0) {
+            return upvalues[expr.getUpvalue()].getValue();
+        }
+        return globals.get(expr.getSelf());
     }
 
     @Override
     public Object visitStructExpr(StructExpr expr) {
-        Map<String, Object> attributes = new HashMap<>();
+        Map<String, Object> attributes = new LinkedHashMap<>();
         for (AssignmentExpr assignmentExpr : expr.getBody()) {
             if (assignmentExpr.getTarget() instanceof VariableExpr varExpr) {
                 String name = varExpr.getIdentifier().getLexeme();
-                Object value = eval(assignmentExpr.getValue());
+                // Methods capture their variables when bound to an instance
+                Object value = assignmentExpr.getValue() instanceof FuncExpr func
+                    ? new Function(func, null)
+                    : eval(assignmentExpr.getValue());
                 attributes.put(name, value);
             }
         }
-        return new Struct(expr, attributes);
+        return new Struct(expr, attributes, env, upvalues);
     }
 
     @Override
     public Object visitUnaryExpr(UnaryExpr expr) {
-        Object o = eval(expr.getExpr());
+        if (expr.getOp().getType() == MINUS) {
+            return -evalNumber(expr.getExpr(), expr.getOp(), "Operand must be a number.");
+        }
 
+        Object o = eval(expr.getExpr());
         switch (expr.getOp().getType()) {
             case BANG: return !bool(o);
-            case MINUS: {
-                checkNumberOperand(expr.getOp(), o);
-                return -(double) o;
-            }
             case BIT_NEG:
                 checkIntOperand(expr.getOp(), o);
                 return ~((Double) o).intValue();
@@ -327,14 +600,23 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
 
     @Override
     public Object visitVariableExpr(VariableExpr expr) {
-        return env.get(expr.getIdentifier());
+        if (expr.getDepth() >= 0) {
+            return env.getAt(expr.getDepth(), expr.getSlot());
+        }
+        if (expr.getUpvalue() >= 0) {
+            return upvalues[expr.getUpvalue()].getValue();
+        }
+        if (expr.isMatched()) {
+            return matched;
+        }
+        return globals.get(expr.getIdentifier());
     }
 
     @Override
     public Object visitBlockStmt(BlockStmt stmt) {
         Environment blockEnv = env;
-        if (blockScope) {
-            blockEnv = new Environment(env);
+        if (stmt.isScoped()) {
+            blockEnv = new Environment(env, stmt.getSlots());
         }
         Object returnValue = execBlock(stmt.getStatements(), blockEnv);
         return returnValue;
@@ -359,9 +641,15 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
     public Object visitImportStmt(ImportStmt stmt) {
         Object o = eval(new VariableExpr(stmt.getModule()));
         if (o instanceof Module module) {
-            stmt.getImports().forEach((token) -> {
-                env.define(token.getLexeme(), module.get(token));
-            });
+            List<Token> imports = stmt.getImports();
+            for (int i = 0; i < imports.size(); i++) {
+                Token token = imports.get(i);
+                if (stmt.getSlots() == null) {
+                    globals.define(token.getLexeme(), module.get(token));
+                } else {
+                    env.define(stmt.getSlots()[i], module.get(token));
+                }
+            }
         }
         return null;
     }
@@ -372,17 +660,71 @@ public class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
         if (stmt.getValue() != null) {
             value = eval(stmt.getValue());
         }
-        throw new Return(value);
+        if (completion == Completion.TAIL_CALL) {
+            return null;
+        }
+        completionValue = value;
+        completion = Completion.RETURN;
+        return value;
     }
 
     @Override
     public Object visitWhileStmt(WhileStmt stmt) {
+        CountedLoop counted = stmt.getCounted();
+        if (counted != null) {
+            VariableExpr variable = counted.getVariable();
+            if (env.getAt(variable.getDepth(), variable.getSlot()) instanceof Double start) {
+                return countedLoop(counted, start);
+            }
+        }
         Object returnValue = null;
         while (bool(eval(stmt.getCondition()))) {
-            blockScope = false;
+            backEdges++;
             returnValue = exec(stmt.getBody());
-            blockScope = true;
+            if (completion != Completion.NORMAL) {
+                break;
+            }
+        }
+        return returnValue;
+    }
+
+    // The counter is kept as a double and only stored to its slot when something could read it there
+    private Object countedLoop(CountedLoop loop, double start) {
+        int depth = loop.getVariable().getDepth();
+        int slot = loop.getVariable().getSlot();
+        boolean store = loop.isRead() || env.isCaptured(depth, slot);
+        Token op = loop.getOp();
+        double step = loop.getStep();
+        double i = start;
+        Object returnValue = null;
+        try {
+            while (compare(op, i, evalNumber(loop.getBound(), op))) {
+                backEdges++;
+                for (Stmt statement : loop.getBody()) {
+                    returnValue = exec(statement);
+                    if (completion != Completion.NORMAL) {
+                        return returnValue;
+                    }
+                }
+                i += step;
+                if (store) {
+                    env.assignAt(depth, slot, i);
+                }
+            }
+        } finally {
+            if (!store) {
+                env.assignAt(depth, slot, i);
+            }
         }
         return returnValue;
     }
+
+    private static boolean compare(Token op, double left, double right) {
+        switch (op.getType()) {
+            case LESSER: return left < right;
+            case LESSER_EQUAL: return left <= right;
+            case GREATER: return left > right;
+            default: return left >= right;
+        }
+    }
 }
@@ -0,0 +1,380 @@
+package com.bifffly.canterbury.interpreter;
+
+import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.optimizer.CountedLoops;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.Capture;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binds every local variable access to a (depth, slot) pair so the interpreter can address
+ * slot-backed environments directly. The scopes opened here must mirror the environments the
+ * interpreter creates at runtime: one per function call, one per block outside of a loop body,
+ * and a parameter scope plus a 'self' scope around every struct method. Variables of enclosing
+ * functions become upvalues of the function that reads them, captured when the function is
+ * created. Anything left unresolved is looked up by name in the globals. Calls whose value is
+ * returned straight from a function are marked as tail calls.
+ */
+public class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
+    private static class Scope {
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private int declare(String name) {
+            return slots.computeIfAbsent(name, (key) -> slots.size());
+        }
+    }
+
+    private static class FunctionScope {
+        private final FunctionScope enclosing;
+        // Index of the function's outermost scope in the scope stack
+        private final int base;
+        private final List<Capture> captures = new ArrayList<>();
+        private final Map<String, Integer> upvalues = new HashMap<>();
+
+        private FunctionScope(FunctionScope enclosing, int base) {
+            this.enclosing = enclosing;
+            this.base = base;
+        }
+    }
+
+    private final List<Scope> scopes = new ArrayList<>();
+    private FunctionScope function = new FunctionScope(null, 0);
+    private int loopDepth = 0;
+    private boolean inFunction = false;
+    // Number of top-level matches being resolved, whose '_' lives outside of the globals
+    private int globalMatchDepth = 0;
+
+    public void resolve(List<Stmt> stmts) {
+        for (Stmt stmt : stmts) {
+            resolveStmt(stmt);
+        }
+    }
+
+    private void resolveStmt(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolveExpr(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void beginScope() {
+        scopes.add(new Scope());
+    }
+
+    private int endScope() {
+        return scopes.remove(scopes.size() - 1).slots.size();
+    }
+
+    private int declare(String name) {
+        if (scopes.isEmpty()) {
+            return -1;
+        }
+        return scopes.get(scopes.size() - 1).declare(name);
+    }
+
+    private void declare(VariableExpr expr) {
+        int slot = declare(expr.getIdentifier().getLexeme());
+        if (slot >= 0) {
+            expr.resolve(0, slot);
+        }
+    }
+
+    // Returns {depth, slot} for a local, {-1, upvalue} for a captured variable, or null for a global
+    private int[] lookup(Token identifier) {
+        return lookup(function, scopes.size() - 1, identifier.getLexeme());
+    }
+
+    private int[] lookup(FunctionScope function, int top, String name) {
+        for (int i = top; i >= function.base; i--) {
+            Integer slot = scopes.get(i).slots.get(name);
+            if (slot != null) {
+                return new int[] {top - i, slot};
+            }
+        }
+        if (function.enclosing == null) {
+            return null;
+        }
+
+        Integer upvalue = function.upvalues.get(name);
+        if (upvalue != null) {
+            return new int[] {-1, upvalue};
+        }
+        int[] binding = lookup(function.enclosing, function.base - 1, name);
+        if (binding == null) {
+            return null;
+        }
+        if (binding[0] >= 0) {
+            function.captures.add(new Capture(binding[0], binding[1], -1));
+        } else {
+            function.captures.add(new Capture(-1, -1, binding[1]));
+        }
+        function.upvalues.put(name, function.captures.size() - 1);
+        return new int[] {-1, function.captures.size() - 1};
+    }
+
+    private void resolveFunction(FuncExpr expr) {
+        boolean enclosingFunction = inFunction;
+        int enclosingLoopDepth = loopDepth;
+        inFunction = true;
+        loopDepth = 0;
+        function = new FunctionScope(function, scopes.size());
+
+        beginScope();
+        for (Token param : expr.getParams()) {
+            declare(param.getLexeme());
+        }
+        resolve(expr.getBody().getStatements());
+        expr.setSlots(endScope());
+        expr.setCaptures(function.captures);
+
+        function = function.enclosing;
+        inFunction = enclosingFunction;
+        loopDepth = enclosingLoopDepth;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        if (expr.getTarget() instanceof VariableExpr varExpr) {
+            // Functions can refer to themselves, anything else sees the previous binding
+            if (expr.getValue() instanceof FuncExpr) {
+                declare(varExpr);
+                resolveExpr(expr.getValue());
+            } else {
+                resolveExpr(expr.getValue());
+                declare(varExpr);
+            }
+        } else {
+            resolveExpr(expr.getValue());
+            resolveExpr(expr.getTarget());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        resolveExpr(expr.getLeft());
+        resolveExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        resolveExpr(expr.getCallee());
+        for (Expr arg : expr.getArgs()) {
+            resolveExpr(arg);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCaseExpr(CaseExpr expr) {
+        resolveExpr(expr.getCondition());
+        resolveExpr(expr.getThen());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncExpr(FuncExpr expr) {
+        resolveFunction(expr);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        resolveExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        resolveExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        resolveExpr(expr.getLeft());
+        resolveExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitMatchExpr(MatchExpr expr) {
+        resolveExpr(expr.getExpr());
+        expr.setSlot(declare("_"));
+        if (expr.getSlot() < 0) {
+            globalMatchDepth++;
+        }
+        for (CaseExpr caseExpr : expr.getCases()) {
+            resolveExpr(caseExpr);
+        }
+        if (expr.getSlot() < 0) {
+            globalMatchDepth--;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSelfExpr(SelfExpr expr) {
+        int[] binding = lookup(expr.getSelf());
+        if (binding != null && binding[0] < 0) {
+            expr.resolveUpvalue(binding[1]);
+        } else if (binding != null) {
+            expr.resolve(binding[0], binding[1]);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStructExpr(StructExpr expr) {
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            if (!(assignmentExpr.getValue() instanceof FuncExpr func)) {
+                resolveExpr(assignmentExpr.getValue());
+                continue;
+            }
+            // Methods are bound per instance inside the struct params and 'self'
+            beginScope();
+            for (Token param : expr.getParams()) {
+                declare(param.getLexeme());
+            }
+            beginScope();
+            declare("self");
+            func.setMethod(true);
+            resolveFunction(func);
+            endScope();
+            endScope();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        resolveExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        int[] binding = lookup(expr.getIdentifier());
+        if (binding != null && binding[0] < 0) {
+            expr.resolveUpvalue(binding[1]);
+        } else if (binding != null) {
+            expr.resolve(binding[0], binding[1]);
+        } else if (globalMatchDepth > 0 && !inFunction && expr.getIdentifier().getLexeme().equals("_")) {
+            expr.resolveMatched();
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        if (loopDepth > 0) {
+            stmt.setScoped(false);
+            resolve(stmt.getStatements());
+            return null;
+        }
+        beginScope();
+        resolve(stmt.getStatements());
+        stmt.setSlots(endScope());
+        stmt.setScoped(true);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        resolveExpr(stmt.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt stmt) {
+        resolveExpr(stmt.getCondition());
+        resolveStmt(stmt.getThenBranch());
+        if (stmt.getElseBranch() != null) {
+            resolveStmt(stmt.getElseBranch());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        if (scopes.isEmpty()) {
+            stmt.setSlots(null);
+            return null;
+        }
+        int[] slots = new int[stmt.getImports().size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = declare(stmt.getImports().get(i).getLexeme());
+        }
+        stmt.setSlots(slots);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt stmt) {
+        if (!inFunction) {
+            Canterbury.error(stmt.getToken(), "Cannot return from top-level code.");
+        }
+        if (stmt.getValue() != null) {
+            resolveExpr(stmt.getValue());
+            markTail(stmt.getValue());
+        }
+        return null;
+    }
+
+    private void markTail(Expr expr) {
+        if (expr instanceof CallExpr callExpr) {
+            callExpr.setTail(true);
+        } else if (expr instanceof GroupingExpr groupingExpr) {
+            markTail(groupingExpr.getExpr());
+        } else if (expr instanceof MatchExpr matchExpr) {
+            for (CaseExpr caseExpr : matchExpr.getCases()) {
+                markTail(caseExpr.getThen());
+            }
+        }
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt stmt) {
+        resolveExpr(stmt.getCondition());
+        loopDepth++;
+        resolveStmt(stmt.getBody());
+        loopDepth--;
+        stmt.setCounted(CountedLoops.of(stmt));
+        return null;
+    }
+}
@@ -13,4 +13,9 @@ public class RuntimeError extends RuntimeException {
     public Token getToken() {
         return token;
     }
+
+    // Errors raised inside natives have no token of their own and are placed at the call instead
+    public RuntimeError at(Token call) {
+        return token == null ? new RuntimeError(call, getMessage()) : this;
+    }
 }
@@ -0,0 +1,176 @@
+package com.bifffly.canterbury.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough of the class file format to define one final class with a handful of methods. The
+ * classes are written as version 49 so that the verifier infers stack frames itself and no
+ * StackMapTable has to be computed for the branches in a method.
+ */
+class ClassFile {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> entries = new HashMap<>();
+    private int poolCount = 1;
+
+    private final String name;
+    private final String superName;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    private int entry(String key, int slots, IOAction write) {
+        Integer index = entries.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            write.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entries.put(key, poolCount);
+        poolCount += slots;
+        return poolCount - slots;
+    }
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    int utf8(String value) {
+        return entry("U" + value, 1, () -> {
+            poolOut.writeByte(CONSTANT_UTF8);
+            poolOut.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return entry("C" + internalName, 1, () -> {
+            poolOut.writeByte(CONSTANT_CLASS);
+            poolOut.writeShort(nameIndex);
+        });
+    }
+
+    private int nameAndType(String member, String descriptor) {
+        int nameIndex = utf8(member);
+        int typeIndex = utf8(descriptor);
+        return entry("N" + member + ":" + descriptor, 1, () -> {
+            poolOut.writeByte(CONSTANT_NAME_AND_TYPE);
+            poolOut.writeShort(nameIndex);
+            poolOut.writeShort(typeIndex);
+        });
+    }
+
+    int methodRef(String owner, String member, String descriptor) {
+        int classIndex = classRef(owner);
+        int typeIndex = nameAndType(member, descriptor);
+        return entry("M" + owner + "." + member + descriptor, 1, () -> {
+            poolOut.writeByte(CONSTANT_METHODREF);
+            poolOut.writeShort(classIndex);
+            poolOut.writeShort(typeIndex);
+        });
+    }
+
+    int fieldRef(String owner, String member, String descriptor) {
+        int classIndex = classRef(owner);
+        int typeIndex = nameAndType(member, descriptor);
+        return entry("F" + owner + "." + member + ":" + descriptor, 1, () -> {
+            poolOut.writeByte(CONSTANT_FIELDREF);
+            poolOut.writeShort(classIndex);
+            poolOut.writeShort(typeIndex);
+        });
+    }
+
+    // Doubles take up two entries of the pool
+    int doubleConstant(double value) {
+        return entry("D" + Double.doubleToRawLongBits(value), 2, () -> {
+            poolOut.writeByte(CONSTANT_DOUBLE);
+            poolOut.writeDouble(value);
+        });
+    }
+
+    void method(int access, String member, String descriptor, Code code) {
+        int nameIndex = utf8(member);
+        int typeIndex = utf8(descriptor);
+        int codeIndex = utf8("Code");
+        byte[] bytes = code.toByteArray();
+
+        ByteArrayOutputStream method = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(method)) {
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(typeIndex);
+            out.writeShort(1);
+            out.writeShort(codeIndex);
+            out.writeInt(12 + bytes.length);
+            out.writeShort(code.getMaxStack());
+            out.writeShort(code.getMaxLocals());
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeShort(0);
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(method.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
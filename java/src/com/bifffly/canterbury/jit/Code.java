@@ -0,0 +1,153 @@
+package com.bifffly.canterbury.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// The body of one method, with forward branches patched once their label is placed
+class Code {
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DNEG = 0x77;
+    static final int IAND = 0x7e;
+    static final int IOR = 0x80;
+    static final int IXOR = 0x82;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPNE = 0xa0;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int CHECKCAST = 0xc0;
+    static final int INSTANCEOF = 0xc1;
+
+    static final class Label {
+        private int position = -1;
+        private final List<Integer> uses = new ArrayList<>();
+    }
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Label> labels = new ArrayList<>();
+    private int depth = 0;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    Code(int locals) {
+        this.maxLocals = locals;
+    }
+
+    int getMaxStack() {
+        return maxStack;
+    }
+
+    int getMaxLocals() {
+        return maxLocals;
+    }
+
+    int size() {
+        return code.size();
+    }
+
+    // Reserves a local of one or two slots and returns its index
+    int local(int slots) {
+        maxLocals += slots;
+        return maxLocals - slots;
+    }
+
+    // Every instruction states how it changes the operand stack so the maximum can be tracked
+    void op(int opcode, int stack) {
+        code.write(opcode);
+        grow(stack);
+    }
+
+    void op(int opcode, int operand, int stack) {
+        code.write(opcode);
+        code.write(operand);
+        grow(stack);
+    }
+
+    void opShort(int opcode, int operand, int stack) {
+        code.write(opcode);
+        code.write((operand >> 8) & 0xff);
+        code.write(operand & 0xff);
+        grow(stack);
+    }
+
+    private void grow(int stack) {
+        depth += stack;
+        maxStack = Math.max(maxStack, depth);
+    }
+
+    // Code after an unconditional branch starts with the stack its label expects
+    void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    Label label() {
+        Label label = new Label();
+        labels.add(label);
+        return label;
+    }
+
+    void jump(int opcode, Label label, int stack) {
+        int at = code.size();
+        code.write(opcode);
+        code.write(0);
+        code.write(0);
+        grow(stack);
+        label.uses.add(at);
+    }
+
+    void place(Label label) {
+        label.position = code.size();
+    }
+
+    // Branch offsets are resolved last, when every label has a position
+    byte[] toByteArray() {
+        byte[] bytes = code.toByteArray();
+        for (Label label : labels) {
+            for (int at : label.uses) {
+                int offset = label.position - at;
+                if (offset > Short.MAX_VALUE || offset < Short.MIN_VALUE) {
+                    throw new Unsupported("Method too large.");
+                }
+                bytes[at + 1] = (byte) ((offset >> 8) & 0xff);
+                bytes[at + 2] = (byte) (offset & 0xff);
+            }
+        }
+        return bytes;
+    }
+}
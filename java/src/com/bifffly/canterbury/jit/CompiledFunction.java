@@ -0,0 +1,12 @@
+package com.bifffly.canterbury.jit;
+
+import com.bifffly.canterbury.interpreter.Environment;
+
+// Base of the classes generated for hot functions
+public abstract class CompiledFunction {
+    // Returned when the arguments break an assumption the code was compiled under
+    public static final Object FALLBACK = new Object();
+
+    // Runs the function on a filled call frame
+    public abstract Object run(Environment frame);
+}
@@ -0,0 +1,487 @@
+package com.bifffly.canterbury.jit;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.TokenType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.bifffly.canterbury.jit.Code.*;
+
+/**
+ * Translates a function into a JVM class when every value in it can be typed statically as a
+ * number or a boolean. The body may use locals, arithmetic, comparisons, ifs, loops and calls to
+ * the function itself, which become direct static calls, or jumps back to the start for tail
+ * calls. Parameters are assumed to be numbers; the generated entry point checks them before
+ * running anything and otherwise returns FALLBACK. Anything else in the body makes the function
+ * Unsupported and it stays interpreted.
+ */
+class FunctionCompiler {
+    private static final String NAME = "com/bifffly/canterbury/jit/Compiled";
+    private static final String BASE = "com/bifffly/canterbury/jit/CompiledFunction";
+    private static final String ENVIRONMENT = "com/bifffly/canterbury/interpreter/Environment";
+    private static final String DOUBLE = "java/lang/Double";
+    private static final String BOOLEAN = "java/lang/Boolean";
+
+    private enum Type {
+        NUMBER("D", 2, DLOAD, DSTORE, DRETURN),
+        BOOLEAN("Z", 1, ILOAD, ISTORE, IRETURN);
+
+        private final String descriptor;
+        private final int size;
+        private final int load;
+        private final int store;
+        private final int ret;
+
+        Type(String descriptor, int size, int load, int store, int ret) {
+            this.descriptor = descriptor;
+            this.size = size;
+            this.load = load;
+            this.store = store;
+            this.ret = ret;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Local {
+        private final int index;
+        private final Type type;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    static class Compilation {
+        private final byte[] bytes;
+        // The variable the function calls itself through, or null if it never does
+        private final VariableExpr self;
+    }
+
+    private final FuncExpr func;
+    private final Type returns;
+    private final ClassFile classFile = new ClassFile(NAME, BASE);
+    private final Code code;
+    private final Label start;
+    // The function's scopes as the resolver laid them out, mapping slots to JVM locals
+    private final List<Map<Integer, Local>> scopes = new ArrayList<>();
+    // JVM locals assigned on every path to the current instruction
+    private BitSet assigned = new BitSet();
+    private boolean reachable = true;
+    private VariableExpr self;
+
+    private FunctionCompiler(FuncExpr func, Type returns) {
+        this.func = func;
+        this.returns = returns;
+        this.code = new Code(func.getParams().size() * Type.NUMBER.size);
+        this.start = code.label();
+    }
+
+    static Compilation compile(FuncExpr func) {
+        if (func.getParams().size() > 100) {
+            throw new Unsupported("Too many parameters.");
+        }
+        try {
+            return new FunctionCompiler(func, Type.NUMBER).compile();
+        } catch (Unsupported e) {
+            return new FunctionCompiler(func, Type.BOOLEAN).compile();
+        }
+    }
+
+    private String bodyDescriptor() {
+        return "(" + Type.NUMBER.descriptor.repeat(func.getParams().size()) + ")" + returns.descriptor;
+    }
+
+    private Compilation compile() {
+        Map<Integer, Local> params = new HashMap<>();
+        for (int i = 0; i < func.getParams().size(); i++) {
+            params.put(i, new Local(i * Type.NUMBER.size, Type.NUMBER));
+            assigned.set(i * Type.NUMBER.size);
+        }
+        scopes.add(params);
+        code.place(start);
+        statements(func.getBody().getStatements());
+        if (reachable) {
+            throw new Unsupported("Function can end without returning a value.");
+        }
+        classFile.method(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, "body", bodyDescriptor(), code);
+        constructor();
+        entry();
+        return new Compilation(classFile.toByteArray(), self);
+    }
+
+    private void constructor() {
+        Code init = new Code(1);
+        init.op(ALOAD, 0, 1);
+        init.opShort(INVOKESPECIAL, classFile.methodRef(BASE, "<init>", "()V"), -1);
+        init.op(RETURN, 0);
+        classFile.method(ClassFile.ACC_PUBLIC, "<init>", "()V", init);
+    }
+
+    // Unboxes the arguments out of the frame, falling back as soon as one is not a number
+    private void entry() {
+        int params = func.getParams().size();
+        Code run = new Code(2);
+        Label fallback = run.label();
+        int[] locals = new int[params];
+        for (int i = 0; i < params; i++) {
+            run.op(ALOAD, 1, 1);
+            run.op(ICONST_0, 1);
+            pushInt(run, i);
+            run.opShort(INVOKEVIRTUAL, classFile.methodRef(ENVIRONMENT, "getAt", "(II)Ljava/lang/Object;"), -2);
+            run.op(DUP, 1);
+            run.opShort(INSTANCEOF, classFile.classRef(DOUBLE), 0);
+            run.jump(IFEQ, fallback, -1);
+            run.opShort(CHECKCAST, classFile.classRef(DOUBLE), 0);
+            run.opShort(INVOKEVIRTUAL, classFile.methodRef(DOUBLE, "doubleValue", "()D"), 1);
+            locals[i] = run.local(2);
+            run.op(DSTORE, locals[i], -2);
+        }
+        for (int local : locals) {
+            run.op(DLOAD, local, 2);
+        }
+        run.opShort(INVOKESTATIC, classFile.methodRef(NAME, "body", bodyDescriptor()), returns.size - params * 2);
+        if (returns == Type.NUMBER) {
+            run.opShort(INVOKESTATIC, classFile.methodRef(DOUBLE, "valueOf", "(D)Ljava/lang/Double;"), -1);
+        } else {
+            run.opShort(INVOKESTATIC, classFile.methodRef(BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;"), 0);
+        }
+        run.op(ARETURN, -1);
+
+        run.setDepth(1);
+        run.place(fallback);
+        run.op(POP, -1);
+        run.opShort(GETSTATIC, classFile.fieldRef(BASE, "FALLBACK", "Ljava/lang/Object;"), 1);
+        run.op(ARETURN, -1);
+        classFile.method(ClassFile.ACC_PUBLIC, "run", "(L" + ENVIRONMENT + ";)Ljava/lang/Object;", run);
+    }
+
+    private static void pushInt(Code code, int value) {
+        if (value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else {
+            code.op(BIPUSH, value, 1);
+        }
+    }
+
+    private void statements(List<Stmt> stmts) {
+        for (Stmt stmt : stmts) {
+            // Nothing after a return can run, so it is left out
+            if (!reachable) {
+                return;
+            }
+            statement(stmt);
+        }
+    }
+
+    private void statement(Stmt stmt) {
+        if (stmt instanceof ExpressionStmt exprStmt) {
+            if (exprStmt.getExpr() instanceof AssignmentExpr assignment) {
+                assign(assignment);
+            } else {
+                Type type = expr(exprStmt.getExpr());
+                code.op(type == Type.NUMBER ? POP2 : POP, -type.size);
+            }
+        } else if (stmt instanceof BlockStmt block) {
+            if (block.isScoped()) {
+                scopes.add(new HashMap<>());
+            }
+            statements(block.getStatements());
+            if (block.isScoped()) {
+                scopes.remove(scopes.size() - 1);
+            }
+        } else if (stmt instanceof IfStmt ifStmt) {
+            branch(ifStmt);
+        } else if (stmt instanceof WhileStmt whileStmt) {
+            loop(whileStmt);
+        } else if (stmt instanceof ReturnStmt returnStmt) {
+            ret(returnStmt);
+        } else {
+            throw new Unsupported("Unsupported statement.");
+        }
+    }
+
+    private void assign(AssignmentExpr expr) {
+        if (!(expr.getTarget() instanceof VariableExpr target) || target.getDepth() != 0) {
+            throw new Unsupported("Assignment outside of the function's locals.");
+        }
+        Type type = expr(expr.getValue());
+        Map<Integer, Local> scope = scopes.get(scopes.size() - 1);
+        Local local = scope.get(target.getSlot());
+        if (local == null) {
+            local = new Local(code.local(type.size), type);
+            scope.put(target.getSlot(), local);
+        } else if (local.type != type) {
+            throw new Unsupported("Local changes type.");
+        }
+        store(local.type.store, local.index, -type.size);
+        assigned.set(local.index);
+    }
+
+    private void store(int opcode, int index, int stack) {
+        if (index > 0xff) {
+            throw new Unsupported("Too many locals.");
+        }
+        code.op(opcode, index, stack);
+    }
+
+    private void branch(IfStmt stmt) {
+        condition(stmt.getCondition());
+        Label otherwise = code.label();
+        Label end = code.label();
+        code.jump(IFEQ, otherwise, -1);
+
+        BitSet before = (BitSet) assigned.clone();
+        statement(stmt.getThenBranch());
+        BitSet thenAssigned = assigned;
+        boolean thenReachable = reachable;
+        if (thenReachable) {
+            code.jump(GOTO, end, 0);
+        }
+
+        code.place(otherwise);
+        assigned = (BitSet) before.clone();
+        reachable = true;
+        if (stmt.getElseBranch() != null) {
+            statement(stmt.getElseBranch());
+        }
+        code.place(end);
+
+        if (thenReachable && reachable) {
+            assigned.and(thenAssigned);
+        } else if (thenReachable) {
+            assigned = thenAssigned;
+        }
+        reachable |= thenReachable;
+    }
+
+    private void loop(WhileStmt stmt) {
+        boolean forever = stmt.getCondition() instanceof LiteralExpr literal && Boolean.TRUE.equals(literal.getValue());
+        Label top = code.label();
+        Label end = code.label();
+        code.place(top);
+        if (!forever) {
+            condition(stmt.getCondition());
+            code.jump(IFEQ, end, -1);
+        }
+
+        // The body may not run at all, so nothing it assigns counts afterwards
+        BitSet before = (BitSet) assigned.clone();
+        statement(stmt.getBody());
+        if (reachable) {
+            code.jump(GOTO, top, 0);
+        }
+        code.place(end);
+        assigned = before;
+        reachable = !forever;
+    }
+
+    private void ret(ReturnStmt stmt) {
+        if (stmt.getValue() == null) {
+            throw new Unsupported("Return without a value.");
+        }
+        if (stmt.getValue() instanceof CallExpr call && call.isTail() && isSelf(call)) {
+            // A tail call to itself reuses the parameters and starts over
+            for (Expr arg : call.getArgs()) {
+                number(arg);
+            }
+            for (int i = call.getArgs().size() - 1; i >= 0; i--) {
+                store(DSTORE, i * Type.NUMBER.size, -Type.NUMBER.size);
+            }
+            code.jump(GOTO, start, 0);
+        } else {
+            Type type = expr(stmt.getValue());
+            if (type != returns) {
+                throw new Unsupported("Return type differs.");
+            }
+            code.op(returns.ret, -type.size);
+        }
+        reachable = false;
+    }
+
+    private void condition(Expr expr) {
+        if (expr(expr) != Type.BOOLEAN) {
+            throw new Unsupported("Condition is not a boolean.");
+        }
+    }
+
+    private void number(Expr expr) {
+        if (expr(expr) != Type.NUMBER) {
+            throw new Unsupported("Operand is not a number.");
+        }
+    }
+
+    private Type expr(Expr expr) {
+        if (expr instanceof LiteralExpr literal) {
+            return literal(literal.getValue());
+        } else if (expr instanceof GroupingExpr grouping) {
+            return expr(grouping.getExpr());
+        } else if (expr instanceof VariableExpr variable) {
+            return variable(variable);
+        } else if (expr instanceof BinaryExpr binary) {
+            return binary(binary);
+        } else if (expr instanceof LogicalExpr logical) {
+            if (expr(logical.getLeft()) != Type.BOOLEAN || expr(logical.getRight()) != Type.BOOLEAN) {
+                throw new Unsupported("Logical operands are not booleans.");
+            }
+            code.op(logical.getOp().getType() == TokenType.AND ? IAND : IOR, -1);
+            return Type.BOOLEAN;
+        } else if (expr instanceof UnaryExpr unary) {
+            return unary(unary);
+        } else if (expr instanceof CallExpr call) {
+            return call(call);
+        }
+        throw new Unsupported("Unsupported expression.");
+    }
+
+    private Type literal(Object value) {
+        if (value instanceof Double d) {
+            if (Double.doubleToRawLongBits(d) == 0L) {
+                code.op(DCONST_0, 2);
+            } else if (d == 1.0) {
+                code.op(DCONST_1, 2);
+            } else {
+                code.opShort(LDC2_W, classFile.doubleConstant(d), 2);
+            }
+            return Type.NUMBER;
+        } else if (value instanceof Boolean b) {
+            code.op(b ? ICONST_1 : ICONST_0, 1);
+            return Type.BOOLEAN;
+        }
+        throw new Unsupported("Unsupported literal.");
+    }
+
+    private Type variable(VariableExpr expr) {
+        if (expr.getDepth() < 0) {
+            throw new Unsupported("Variable outside of the function.");
+        }
+        Local local = scopes.get(scopes.size() - 1 - expr.getDepth()).get(expr.getSlot());
+        if (local == null || !assigned.get(local.index)) {
+            throw new Unsupported("Variable may be unassigned.");
+        }
+        code.op(local.type.load, local.index, local.type.size);
+        return local.type;
+    }
+
+    private Type binary(BinaryExpr expr) {
+        switch (expr.getOp().getType()) {
+            case PLUS: return arithmetic(expr, DADD);
+            case MINUS: return arithmetic(expr, DSUB);
+            case STAR: return arithmetic(expr, DMUL);
+            case SLASH: return arithmetic(expr, DDIV);
+            // NaN compares false either way, like it does in the interpreter
+            case LESSER: return comparison(expr, DCMPG, IFLT);
+            case LESSER_EQUAL: return comparison(expr, DCMPG, IFLE);
+            case GREATER: return comparison(expr, DCMPL, IFGT);
+            case GREATER_EQUAL: return comparison(expr, DCMPL, IFGE);
+            case EQUAL: return equality(expr, IFEQ);
+            case UNEQUAL: return equality(expr, IFNE);
+            default: throw new Unsupported("Unsupported operator.");
+        }
+    }
+
+    private Type arithmetic(BinaryExpr expr, int opcode) {
+        number(expr.getLeft());
+        number(expr.getRight());
+        code.op(opcode, -2);
+        return Type.NUMBER;
+    }
+
+    private Type comparison(BinaryExpr expr, int compare, int jump) {
+        number(expr.getLeft());
+        number(expr.getRight());
+        code.op(compare, -3);
+        return materialize(jump);
+    }
+
+    // Equality of numbers is Double.equals, so -0.0 and 0.0 differ and NaN equals itself
+    private Type equality(BinaryExpr expr, int jump) {
+        Type left = expr(expr.getLeft());
+        if (expr(expr.getRight()) != left) {
+            throw new Unsupported("Equality over different types.");
+        }
+        if (left == Type.NUMBER) {
+            code.opShort(INVOKESTATIC, classFile.methodRef(DOUBLE, "compare", "(DD)I"), -3);
+        } else {
+            code.op(IXOR, -1);
+        }
+        return materialize(jump);
+    }
+
+    // Turns the int on the stack into a boolean that is true when the jump would be taken
+    private Type materialize(int jump) {
+        Label yes = code.label();
+        Label end = code.label();
+        code.jump(jump, yes, -1);
+        code.op(ICONST_0, 1);
+        code.jump(GOTO, end, 0);
+        code.setDepth(code.getDepth() - 1);
+        code.place(yes);
+        code.op(ICONST_1, 1);
+        code.place(end);
+        return Type.BOOLEAN;
+    }
+
+    private Type unary(UnaryExpr expr) {
+        switch (expr.getOp().getType()) {
+            case MINUS:
+                number(expr.getExpr());
+                code.op(DNEG, 0);
+                return Type.NUMBER;
+            case BANG:
+                if (expr(expr.getExpr()) != Type.BOOLEAN) {
+                    throw new Unsupported("Negated operand is not a boolean.");
+                }
+                code.op(ICONST_1, 1);
+                code.op(IXOR, -1);
+                return Type.BOOLEAN;
+            default:
+                throw new Unsupported("Unsupported operator.");
+        }
+    }
+
+    private Type call(CallExpr expr) {
+        if (!isSelf(expr)) {
+            throw new Unsupported("Call to another function.");
+        }
+        for (Expr arg : expr.getArgs()) {
+            number(arg);
+        }
+        int params = expr.getArgs().size() * Type.NUMBER.size;
+        code.opShort(INVOKESTATIC, classFile.methodRef(NAME, "body", bodyDescriptor()), returns.size - params);
+        return returns;
+    }
+
+    // Every call in a compiled body has to go through one variable outside of the function, which
+    // the caller checks holds the function itself before running the compiled code
+    private boolean isSelf(CallExpr expr) {
+        if (!(expr.getCallee() instanceof VariableExpr callee) || callee.getDepth() >= 0 || callee.isMatched()
+            || expr.getArgs().size() != func.getParams().size()) {
+            return false;
+        }
+        if (self == null) {
+            self = callee;
+            return true;
+        }
+        return self.getUpvalue() == callee.getUpvalue()
+            && self.getIdentifier().getLexeme().equals(callee.getIdentifier().getLexeme());
+    }
+}
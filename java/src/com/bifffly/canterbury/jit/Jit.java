@@ -0,0 +1,72 @@
+package com.bifffly.canterbury.jit;
+
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.object.Function;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The interpreter's second tier. Every call of a function, and every loop iteration run during
+ * the call, heats its FuncExpr; once past the threshold the function is compiled into a hidden
+ * class and later calls run that instead of walking the tree. Compiled code assumes that its
+ * arguments are numbers and that the name it calls itself by still holds the function, and hands
+ * the call back to the interpreter whenever either assumption fails.
+ */
+public class Jit {
+    public static final int THRESHOLD = 1000;
+
+    private final Interpreter interpreter;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    public Jit(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    // The result of running the compiled function, or FALLBACK if it should be interpreted
+    public Object enter(Function function, Environment frame) {
+        Profile profile = function.getExpr().getProfile();
+        if (profile.code == null) {
+            if (profile.unsupported || ++profile.heat < THRESHOLD) {
+                return CompiledFunction.FALLBACK;
+            }
+            compile(function.getExpr(), profile);
+            if (profile.code == null) {
+                return CompiledFunction.FALLBACK;
+            }
+        }
+        VariableExpr self = profile.compilation.getSelf();
+        if (self != null && lookup(function, self) != function) {
+            return CompiledFunction.FALLBACK;
+        }
+        return profile.code.run(frame);
+    }
+
+    public void heat(FuncExpr expr, int amount) {
+        expr.getProfile().heat += amount;
+    }
+
+    private Object lookup(Function function, VariableExpr variable) {
+        if (variable.getUpvalue() >= 0) {
+            return function.getUpvalues()[variable.getUpvalue()].getValue();
+        }
+        return interpreter.global(variable.getIdentifier().getLexeme());
+    }
+
+    private void compile(FuncExpr expr, Profile profile) {
+        try {
+            FunctionCompiler.Compilation compilation = FunctionCompiler.compile(expr);
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(compilation.getBytes(), true);
+            profile.code = (CompiledFunction) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class))
+                .invoke();
+            profile.compilation = compilation;
+        } catch (Unsupported | LinkageError e) {
+            profile.unsupported = true;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not load compiled function.", e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.bifffly.canterbury.jit;
+
+// What the JIT knows about one function: how hot it is and, once compiled, its code
+public class Profile {
+    int heat = 0;
+    boolean unsupported = false;
+    CompiledFunction code;
+    FunctionCompiler.Compilation compilation;
+}
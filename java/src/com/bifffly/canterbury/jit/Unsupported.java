@@ -0,0 +1,10 @@
+package com.bifffly.canterbury.jit;
+
+// Thrown while compiling a function that uses something the compiler has no translation for
+class Unsupported extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported(String message) {
+        super(message, null, false, false);
+    }
+}
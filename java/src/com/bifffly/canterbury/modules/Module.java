@@ -28,6 +28,11 @@ public class Module {
         return env.get(identifier);
     }
 
+    // Whether the value is one this module defines
+    public boolean owns(Object value) {
+        return env.getEnv().containsValue(value);
+    }
+
     void defineNativeFunction(String identifier, int arity, Function<Object, Object> value) {
         this.define(identifier, new Callable() {
             @Override
@@ -1,6 +1,8 @@
 package com.bifffly.canterbury.modules;
 
+import com.bifffly.canterbury.interpreter.Environment;
 import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.object.Memoized;
 import lombok.Getter;
 
 import java.io.BufferedReader;
@@ -8,14 +10,18 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static com.bifffly.canterbury.interpreter.Interpreter.stringify;
 
 @Getter
 public class StandardLibrary {
     private List<Module> modules;
+    // Number of calls made into IO, which memoized functions must not do
+    private long effects = 0;
 
-    public StandardLibrary() {
+    // The globals of the program the library is loaded into, which memo looks names up in
+    public StandardLibrary(Environment globals) {
         Module math = new Module("Math");
         math.defineNativeFunction("sqrt", 1, (arg) -> Math.sqrt((double) arg));
         math.defineNativeFunction("pow", 2, base -> {
@@ -29,10 +35,26 @@ public class StandardLibrary {
 
         Module io = new Module("IO");
         io.defineNativeFunction("print", 1, (arg) -> {
+            effects++;
             System.out.println(stringify(arg));
             return null;
         });
 
-        modules = List.of(math, time, io);
+        Module memo = new Module("Memo");
+        Predicate<Object> effectful = (value) -> value == io || io.owns(value);
+        memo.defineNativeFunction("memo", 2, function -> {
+            return (Function<Object, Memoized>) capacity -> Memoized.of(function, capacity, globals, effectful, () -> effects);
+        });
+        memo.defineNativeFunction("hits", 1, (arg) -> (double) memoized(arg).getHits());
+        memo.defineNativeFunction("misses", 1, (arg) -> (double) memoized(arg).getMisses());
+
+        modules = List.of(math, time, io, memo);
+    }
+
+    private static Memoized memoized(Object arg) {
+        if (!(arg instanceof Memoized memoized)) {
+            throw new RuntimeError(null, "Expected a memoized function.");
+        }
+        return memoized;
     }
 }
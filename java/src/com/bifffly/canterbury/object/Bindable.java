@@ -0,0 +1,16 @@
+package com.bifffly.canterbury.object;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+
+public interface Bindable {
+    public FuncExpr getExpr();
+
+    // The variables the function closes over, or null for a method that has yet to be bound
+    public Cell[] getUpvalues();
+
+    // Whether this is a method declared in a struct body that has yet to be bound to an instance
+    public boolean isUnbound();
+
+    public Callable bind(Instance instance);
+}
@@ -2,9 +2,31 @@ package com.bifffly.canterbury.object;
 
 import com.bifffly.canterbury.interpreter.Interpreter;
 
+import java.util.Arrays;
 import java.util.List;
 
 public interface Callable {
     public int arity();
     public Object call(Interpreter interpreter, List<Object> args);
+
+    // Calls that pass their arguments directly; implementations override these to skip the list
+    public default Object call(Interpreter interpreter, Object[] args) {
+        return call(interpreter, Arrays.asList(args));
+    }
+
+    public default Object call0(Interpreter interpreter) {
+        return call(interpreter, new Object[0]);
+    }
+
+    public default Object call1(Interpreter interpreter, Object a) {
+        return call(interpreter, new Object[] {a});
+    }
+
+    public default Object call2(Interpreter interpreter, Object a, Object b) {
+        return call(interpreter, new Object[] {a, b});
+    }
+
+    public default Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        return call(interpreter, new Object[] {a, b, c});
+    }
 }
@@ -1,8 +1,10 @@
 package com.bifffly.canterbury.object;
 
+import com.bifffly.canterbury.interpreter.Cell;
 import com.bifffly.canterbury.interpreter.Environment;
 import com.bifffly.canterbury.interpreter.Interpreter;
-import com.bifffly.canterbury.interpreter.Return;
+import com.bifffly.canterbury.jit.CompiledFunction;
+import com.bifffly.canterbury.jit.Jit;
 import com.bifffly.canterbury.parser.expr.FuncExpr;
 import com.bifffly.canterbury.tokens.Token;
 import lombok.AllArgsConstructor;
@@ -14,14 +16,28 @@ import java.util.List;
 @AllArgsConstructor
 @EqualsAndHashCode
 @Getter
-public class Function implements Callable {
+public class Function implements Callable, Bindable {
     private final FuncExpr expr;
-    private final Environment env;
+    private final Cell[] upvalues;
 
+    @Override
+    public boolean isUnbound() {
+        return expr.isMethod() && upvalues == null;
+    }
+
+    @Override
     public Function bind(Instance instance) {
-        Environment boundEnv = new Environment(env);
-        boundEnv.define("self", instance);
-        return new Function(expr, boundEnv);
+        return new Function(expr, instance.capture(expr.getCaptures()));
+    }
+
+    // A fresh frame for a call, for callers that evaluate arguments straight into it
+    public Environment frame() {
+        return new Environment(null, expr.getSlots());
+    }
+
+    // Runs a filled frame as this method of an instance without creating a bound copy of it
+    public Object invoke(Interpreter interpreter, Instance instance, Environment frame) {
+        return interpreter.execFunction(expr.getBody().getStatements(), frame, instance.capture(expr.getCaptures()));
     }
 
     @Override
@@ -31,17 +47,66 @@ public class Function implements Callable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> args) {
-        Environment local = new Environment(env);
-        List<Token> params = expr.getParams();
+        Environment local = frame();
         for (int i = 0; i < arity(); i++) {
-            local.define(params.get(i).getLexeme(), args.get(i));
+            local.define(i, args.get(i));
+        }
+        return run(interpreter, local);
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] args) {
+        Environment local = frame();
+        for (int i = 0; i < arity(); i++) {
+            local.define(i, args[i]);
+        }
+        return run(interpreter, local);
+    }
+
+    @Override
+    public Object call0(Interpreter interpreter) {
+        return run(interpreter, frame());
+    }
+
+    @Override
+    public Object call1(Interpreter interpreter, Object a) {
+        Environment local = frame();
+        local.define(0, a);
+        return run(interpreter, local);
+    }
+
+    @Override
+    public Object call2(Interpreter interpreter, Object a, Object b) {
+        Environment local = frame();
+        local.define(0, a);
+        local.define(1, b);
+        return run(interpreter, local);
+    }
+
+    @Override
+    public Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+        Environment local = frame();
+        local.define(0, a);
+        local.define(1, b);
+        local.define(2, c);
+        return run(interpreter, local);
+    }
+
+    private Object run(Interpreter interpreter, Environment local) {
+        Jit jit = interpreter.getJit();
+        if (jit == null) {
+            return interpreter.execFunction(expr.getBody().getStatements(), local, upvalues);
+        }
+        Object result = jit.enter(this, local);
+        if (result != CompiledFunction.FALLBACK) {
+            return result;
         }
+        int backEdges = interpreter.getBackEdges();
         try {
-            interpreter.execBlock(expr.getBody().getStatements(), local);
-        } catch (Return value) {
-            return value.getValue();
+            return interpreter.execFunction(expr.getBody().getStatements(), local, upvalues);
+        } finally {
+            jit.heat(expr, interpreter.getBackEdges() - backEdges);
         }
-        return null;
     }
 
     @Override
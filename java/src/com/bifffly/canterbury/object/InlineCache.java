@@ -0,0 +1,36 @@
+package com.bifffly.canterbury.object;
+
+import com.bifffly.canterbury.tokens.Token;
+import lombok.Getter;
+
+// Remembers which slot a property lives in for the last few shapes seen at one access site.
+// Shapes never change once created, so a cached slot stays valid for as long as the shape exists.
+@Getter
+public class InlineCache {
+    private static final int ENTRIES = 4;
+
+    private final Token identifier;
+    private final Shape[] shapes = new Shape[ENTRIES];
+    private final int[] slots = new int[ENTRIES];
+    private int size = 0;
+
+    public InlineCache(Token identifier) {
+        this.identifier = identifier;
+    }
+
+    public int lookup(Shape shape) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape) {
+                return slots[i];
+            }
+        }
+        int slot = shape.indexOf(identifier.getLexeme());
+        // Past a handful of shapes the site is megamorphic and every miss goes to the shape
+        if (slot >= 0 && size < ENTRIES) {
+            shapes[size] = shape;
+            slots[size] = slot;
+            size++;
+        }
+        return slot;
+    }
+}
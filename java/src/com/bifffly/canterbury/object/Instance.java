@@ -1,46 +1,94 @@
 package com.bifffly.canterbury.object;
 
+import com.bifffly.canterbury.interpreter.Cell;
 import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.parser.expr.Capture;
 import com.bifffly.canterbury.tokens.Token;
 import lombok.EqualsAndHashCode;
 
+import java.util.Arrays;
 import java.util.List;
 
 @EqualsAndHashCode
 public class Instance {
     private final Struct struct;
-    private final Environment env;
+    private Shape shape;
+    private Object[] fields;
+    @EqualsAndHashCode.Exclude
+    private final Environment selfEnv;
 
-    public Instance(Struct struct, Environment env, List<Object> args) {
+    public Instance(Struct struct, List<Object> args) {
         this.struct = struct;
-        this.env = new Environment(env);
-        struct.getAttributes().forEach(this.env::define);
+        this.shape = struct.getShape();
+        this.fields = struct.getAttributes().clone();
+        int[] paramSlots = struct.getParamSlots();
+        for (int i = 0; i < paramSlots.length; i++) {
+            if (paramSlots[i] >= 0) {
+                fields[paramSlots[i]] = args.get(i);
+            }
+        }
 
-        // Adding param values to attributes
+        // Methods are bound inside a scope holding the param values, then one holding 'self'
+        Environment params = new Environment(struct.getEnv(), struct.arity());
         for (int i = 0; i < struct.arity(); i++) {
-            String paramName = struct.getExpr().getParams().get(i).getLexeme();
-            env.define(paramName, args.get(i));
-
-            // Need to add param values to environment of function attributes
-            for (String name : struct.getAttributes().keySet()) {
-                Object attribute = struct.getAttributes().get(name);
-                if (attribute instanceof Function func) {
-                    func.getEnv().define(paramName, args.get(i));
-                }
-            }
+            params.define(i, args.get(i));
         }
+        this.selfEnv = new Environment(params, 1);
+        this.selfEnv.define(0, this);
+    }
+
+    public Struct getStruct() {
+        return struct;
+    }
+
+    public Environment getSelfEnv() {
+        return selfEnv;
+    }
+
+    // Upvalues for a method of this instance, as if it had been bound to it
+    public Cell[] capture(List<Capture> captures) {
+        return selfEnv.capture(captures, struct.getUpvalues());
     }
 
     public void define(Token identifier, Object value) {
-        env.define(identifier.getLexeme(), value);
+        int slot = shape.indexOf(identifier.getLexeme());
+        if (slot < 0) {
+            shape = shape.with(identifier.getLexeme());
+            slot = shape.size() - 1;
+            if (slot >= fields.length) {
+                fields = Arrays.copyOf(fields, Math.max(4, fields.length * 2));
+            }
+        }
+        fields[slot] = value;
     }
 
     public Object get(Token identifier) {
-        Object value = env.get(identifier);
-        if (value instanceof Function func) {
-            return func.bind(this);
+        return bind(field(identifier, shape.indexOf(identifier.getLexeme())));
+    }
+
+    public Object get(InlineCache cache) {
+        return bind(getUnbound(cache));
+    }
+
+    // The raw field value, leaving unbound methods for the caller to invoke against this instance
+    public Object getUnbound(InlineCache cache) {
+        return field(cache.getIdentifier(), cache.lookup(shape));
+    }
+
+    private Object field(Token identifier, int slot) {
+        if (slot < 0) {
+            throw new RuntimeError(identifier, "Undefined variable " + identifier.getLexeme() + ".");
+        }
+        return fields[slot];
+    }
+
+    // Only methods of the struct are bound; any other function keeps the variables it closed over
+    private Object bind(Object value) {
+        if (value instanceof Bindable method && method.isUnbound()) {
+            return method.bind(this);
         }
-        return env.get(identifier);
+        return value;
     }
 
     @Override
@@ -0,0 +1,111 @@
+package com.bifffly.canterbury.object;
+
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.optimizer.Purity;
+import com.bifffly.canterbury.tokens.Token;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A function whose results are cached by the arguments it was called with. The cache keeps at most
+ * capacity results and evicts the least recently used one. Only calls whose arguments are all
+ * plain values are cached; a call passing a struct or a function goes straight through, since
+ * those can change after being used as a key.
+ *
+ * <p>A function that assigns a property, or whose names reach IO as they are bound when it is
+ * wrapped, is refused then and there. Effects reached through a parameter, or through a name bound
+ * again later, are only seen when the function runs, so every call that is not served from the
+ * cache counts the IO done while it ran: a call that did any is an error rather than a result.
+ */
+@Getter
+public class Memoized implements Callable {
+    private final Callable function;
+    private final int capacity;
+    @Getter(AccessLevel.NONE)
+    private final LongSupplier effects;
+    @Getter(AccessLevel.NONE)
+    private final Map<List<Object>, Object> results;
+    private long hits = 0;
+    private long misses = 0;
+
+    public Memoized(Callable function, int capacity, LongSupplier effects) {
+        this.function = function;
+        this.capacity = capacity;
+        this.effects = effects;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, Object> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Wraps a function given to memo, looking up its names in globals; effects counts the IO done so far
+    public static Memoized of(Object function, Object capacity, Environment globals,
+                              Predicate<Object> effectful, LongSupplier effects) {
+        if (!(function instanceof Bindable func) || func.isUnbound()) {
+            throw new RuntimeError(null, "Can only memoize functions.");
+        }
+        if (!(capacity instanceof Double size) || size < 1 || size != Math.rint(size)) {
+            throw new RuntimeError(null, "Memo size must be a positive integer.");
+        }
+        Token impurity = Purity.impurity(func, globals, effectful);
+        if (impurity != null) {
+            throw new RuntimeError(impurity, "Cannot memoize a function with side effects.");
+        }
+        return new Memoized((Callable) function, (int) Math.min(size, Integer.MAX_VALUE), effects);
+    }
+
+    private static boolean isValue(Object o) {
+        return o == null || o instanceof Double || o instanceof Integer || o instanceof String || o instanceof Boolean;
+    }
+
+    @Override
+    public int arity() {
+        return function.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        return call(interpreter, args.toArray());
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] args) {
+        for (Object arg : args) {
+            if (!isValue(arg)) {
+                misses++;
+                return function.call(interpreter, args);
+            }
+        }
+        List<Object> key = Arrays.asList(args);
+        Object result = results.get(key);
+        if (result != null || results.containsKey(key)) {
+            hits++;
+            return result;
+        }
+        misses++;
+        long before = effects.getAsLong();
+        result = function.call(interpreter, args);
+        // Raised before the result is cached, and placed at the call by whoever made it
+        if (effects.getAsLong() != before) {
+            throw new RuntimeError(null, "Cannot memoize a function with side effects.");
+        }
+        results.put(key, result);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "<memo " + function + ">";
+    }
+}
@@ -0,0 +1,39 @@
+package com.bifffly.canterbury.object;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Maps field names to slots in an instance's field array. Shapes are immutable and shared: adding
+// a field moves an instance to the shape reached by that transition, so instances built the same
+// way end up with the same shape.
+public class Shape {
+    private static final Shape ROOT = new Shape(new HashMap<>());
+
+    private final Map<String, Integer> slots;
+    private final Map<String, Shape> transitions = new HashMap<>();
+
+    private Shape(Map<String, Integer> slots) {
+        this.slots = slots;
+    }
+
+    public static Shape root() {
+        return ROOT;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public int indexOf(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public Shape with(String name) {
+        return transitions.computeIfAbsent(name, (key) -> {
+            Map<String, Integer> extended = new HashMap<>(slots);
+            extended.put(key, slots.size());
+            return new Shape(extended);
+        });
+    }
+}
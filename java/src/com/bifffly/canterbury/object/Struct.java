@@ -1,21 +1,56 @@
 package com.bifffly.canterbury.object;
 
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
 import com.bifffly.canterbury.interpreter.Interpreter;
 import com.bifffly.canterbury.parser.expr.StructExpr;
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
-@AllArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class Struct implements Callable {
     private final StructExpr expr;
-    private final Map<String, Object> attributes;
+    // Instances start out with this shape and a copy of these attribute values
+    private final Shape shape;
+    private final Object[] attributes;
+    // The field each param value is stored in, or -1 where an attribute of the same name hides it
+    private final int[] paramSlots;
+    // The scope and upvalues the struct was defined with, which its methods close over
+    @EqualsAndHashCode.Exclude
+    private final Environment env;
+    @EqualsAndHashCode.Exclude
+    private final Cell[] upvalues;
+
+    public Struct(StructExpr expr, Map<String, Object> attributes, Environment env, Cell[] upvalues) {
+        Shape shape = Shape.root();
+        for (String name : attributes.keySet()) {
+            shape = shape.with(name);
+        }
+        // Params follow the attributes, so they can be read off an instance like any other field
+        this.paramSlots = new int[expr.getParams().size()];
+        for (int i = 0; i < paramSlots.length; i++) {
+            String name = expr.getParams().get(i).getLexeme();
+            if (attributes.containsKey(name)) {
+                paramSlots[i] = -1;
+                continue;
+            }
+            if (shape.indexOf(name) < 0) {
+                shape = shape.with(name);
+            }
+            paramSlots[i] = shape.indexOf(name);
+        }
+        this.expr = expr;
+        this.shape = shape;
+        this.attributes = Arrays.copyOf(attributes.values().toArray(), shape.size());
+        this.env = env;
+        this.upvalues = upvalues;
+    }
 
     @Override
     public int arity() {
@@ -24,7 +59,7 @@ public class Struct implements Callable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> args) {
-        return new Instance(this, interpreter.getEnv(), args);
+        return new Instance(this, args);
     }
 
     @Override
@@ -0,0 +1,165 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Renders the tree as nested s-expressions, one top-level statement per line
+public class AstPrinter implements ExprVisitor<String>, StmtVisitor<String> {
+    public String print(List<Stmt> stmts) {
+        return stmts.stream().map(this::printStmt).collect(Collectors.joining("\n"));
+    }
+
+    private String printStmt(Stmt stmt) {
+        return stmt == null ? "()" : (String) stmt.accept(this);
+    }
+
+    private String printExpr(Expr expr) {
+        return expr == null ? "()" : expr.accept(this);
+    }
+
+    private String parenthesize(String name, String... parts) {
+        StringBuilder builder = new StringBuilder("(").append(name);
+        for (String part : parts) {
+            builder.append(" ").append(part);
+        }
+        return builder.append(")").toString();
+    }
+
+    private String names(List<Token> tokens) {
+        return "(" + tokens.stream().map(Token::getLexeme).collect(Collectors.joining(" ")) + ")";
+    }
+
+    private String exprs(List<? extends Expr> exprs) {
+        return exprs.stream().map(this::printExpr).collect(Collectors.joining(" "));
+    }
+
+    @Override
+    public String visitAssignmentExpr(AssignmentExpr expr) {
+        return parenthesize(":=", printExpr(expr.getTarget()), printExpr(expr.getValue()));
+    }
+
+    @Override
+    public String visitBinaryExpr(BinaryExpr expr) {
+        return parenthesize(expr.getOp().getLexeme(), printExpr(expr.getLeft()), printExpr(expr.getRight()));
+    }
+
+    @Override
+    public String visitCallExpr(CallExpr expr) {
+        return parenthesize("call", printExpr(expr.getCallee()), exprs(expr.getArgs()));
+    }
+
+    @Override
+    public String visitCaseExpr(CaseExpr expr) {
+        return parenthesize("case", printExpr(expr.getCondition()), printExpr(expr.getThen()));
+    }
+
+    @Override
+    public String visitFuncExpr(FuncExpr expr) {
+        return parenthesize("func", names(expr.getParams()), printStmt(expr.getBody()));
+    }
+
+    @Override
+    public String visitGetExpr(GetExpr expr) {
+        return parenthesize("get", printExpr(expr.getExpr()), expr.getIdentifier().getLexeme());
+    }
+
+    @Override
+    public String visitGroupingExpr(GroupingExpr expr) {
+        return parenthesize("group", printExpr(expr.getExpr()));
+    }
+
+    @Override
+    public String visitLiteralExpr(LiteralExpr expr) {
+        if (expr.getValue() instanceof String string) {
+            return "\"" + string + "\"";
+        }
+        return String.valueOf(expr.getValue());
+    }
+
+    @Override
+    public String visitLogicalExpr(LogicalExpr expr) {
+        return parenthesize(expr.getOp().getLexeme(), printExpr(expr.getLeft()), printExpr(expr.getRight()));
+    }
+
+    @Override
+    public String visitMatchExpr(MatchExpr expr) {
+        return parenthesize("match", printExpr(expr.getExpr()), exprs(expr.getCases()));
+    }
+
+    @Override
+    public String visitSelfExpr(SelfExpr expr) {
+        return "self";
+    }
+
+    @Override
+    public String visitStructExpr(StructExpr expr) {
+        return parenthesize("struct", names(expr.getParams()), exprs(expr.getBody()));
+    }
+
+    @Override
+    public String visitUnaryExpr(UnaryExpr expr) {
+        return parenthesize(expr.getOp().getLexeme(), printExpr(expr.getExpr()));
+    }
+
+    @Override
+    public String visitVariableExpr(VariableExpr expr) {
+        return expr.getIdentifier().getLexeme();
+    }
+
+    @Override
+    public String visitBlockStmt(BlockStmt stmt) {
+        return parenthesize("block", stmt.getStatements().stream().map(this::printStmt).toArray(String[]::new));
+    }
+
+    @Override
+    public String visitExpressionStmt(ExpressionStmt stmt) {
+        return printExpr(stmt.getExpr());
+    }
+
+    @Override
+    public String visitIfStmt(IfStmt stmt) {
+        return parenthesize("if", printExpr(stmt.getCondition()),
+                printStmt(stmt.getThenBranch()), printStmt(stmt.getElseBranch()));
+    }
+
+    @Override
+    public String visitImportStmt(ImportStmt stmt) {
+        return parenthesize("import", stmt.getModule().getLexeme(), names(stmt.getImports()));
+    }
+
+    @Override
+    public String visitReturnStmt(ReturnStmt stmt) {
+        return parenthesize("return", printExpr(stmt.getValue()));
+    }
+
+    @Override
+    public String visitWhileStmt(WhileStmt stmt) {
+        return parenthesize("while", printExpr(stmt.getCondition()), printStmt(stmt.getBody()));
+    }
+}
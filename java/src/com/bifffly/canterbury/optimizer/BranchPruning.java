@@ -0,0 +1,34 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+
+import static com.bifffly.canterbury.interpreter.Interpreter.bool;
+
+// Replaces ifs on a literal condition with the branch taken, and drops loops that never run
+public class BranchPruning extends TreeRewriter {
+    @Override
+    public String getName() {
+        return "branch-pruning";
+    }
+
+    @Override
+    public Stmt visitIfStmt(IfStmt stmt) {
+        IfStmt rewritten = (IfStmt) super.visitIfStmt(stmt);
+        if (rewritten.getCondition() instanceof LiteralExpr literal) {
+            return bool(literal.getValue()) ? rewritten.getThenBranch() : rewritten.getElseBranch();
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(WhileStmt stmt) {
+        WhileStmt rewritten = (WhileStmt) super.visitWhileStmt(stmt);
+        if (rewritten.getCondition() instanceof LiteralExpr literal && !bool(literal.getValue())) {
+            return null;
+        }
+        return rewritten;
+    }
+}
@@ -0,0 +1,61 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+
+// Evaluates operators over literals ahead of time. Folding goes through the interpreter so the
+// results match what running them would give; anything that fails is left to fail at runtime.
+public class ConstantFolding extends TreeRewriter {
+    private final Interpreter interpreter = new Interpreter();
+
+    @Override
+    public String getName() {
+        return "constant-folding";
+    }
+
+    private Expr fold(Expr expr) {
+        try {
+            return new LiteralExpr(interpreter.evaluate(expr));
+        } catch (RuntimeException e) {
+            return expr;
+        }
+    }
+
+    @Override
+    public Expr visitBinaryExpr(BinaryExpr expr) {
+        BinaryExpr rewritten = (BinaryExpr) super.visitBinaryExpr(expr);
+        if (rewritten.getLeft() instanceof LiteralExpr && rewritten.getRight() instanceof LiteralExpr) {
+            return fold(rewritten);
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(GroupingExpr expr) {
+        Expr inner = rewriteExpr(expr.getExpr());
+        return inner instanceof LiteralExpr ? inner : new GroupingExpr(inner);
+    }
+
+    @Override
+    public Expr visitLogicalExpr(LogicalExpr expr) {
+        LogicalExpr rewritten = (LogicalExpr) super.visitLogicalExpr(expr);
+        if (rewritten.getLeft() instanceof LiteralExpr && rewritten.getRight() instanceof LiteralExpr) {
+            return fold(rewritten);
+        }
+        return rewritten;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(UnaryExpr expr) {
+        UnaryExpr rewritten = (UnaryExpr) super.visitUnaryExpr(expr);
+        if (rewritten.getExpr() instanceof LiteralExpr) {
+            return fold(rewritten);
+        }
+        return rewritten;
+    }
+}
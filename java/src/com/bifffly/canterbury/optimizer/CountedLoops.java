@@ -0,0 +1,134 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.CountedLoop;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.TokenType;
+
+import java.util.List;
+
+import static com.bifffly.canterbury.tokens.TokenType.*;
+
+/**
+ * Recognizes loops that count, which is what a for loop lowers to: the condition compares a local
+ * against a literal or another variable, and the body ends by adding a constant to that local and
+ * binds it nowhere else. Looks for every mention of the counter in the body, nested functions
+ * included, to tell whether the body ever reads it.
+ */
+public class CountedLoops extends TreeScanner {
+    private final String name;
+    private boolean bound = false;
+    private boolean read = false;
+
+    private CountedLoops(String name) {
+        this.name = name;
+    }
+
+    // What makes the loop counted, or null if it isn't; the loop has to be resolved already
+    public static CountedLoop of(WhileStmt stmt) {
+        if (!(unwrap(stmt.getCondition()) instanceof BinaryExpr condition)
+            || !isComparison(condition.getOp().getType())
+            || !(unwrap(condition.getLeft()) instanceof VariableExpr variable)
+            || variable.getDepth() < 0
+            || !(stmt.getBody() instanceof BlockStmt body)
+            || body.getStatements().isEmpty()) {
+            return null;
+        }
+        String name = variable.getIdentifier().getLexeme();
+        Expr limit = unwrap(condition.getRight());
+        if (!(limit instanceof LiteralExpr literal && literal.getValue() instanceof Double)
+            && !(limit instanceof VariableExpr other && !other.getIdentifier().getLexeme().equals(name))) {
+            return null;
+        }
+
+        List<Stmt> statements = body.getStatements();
+        Double step = step(statements.get(statements.size() - 1), variable);
+        if (step == null) {
+            return null;
+        }
+        List<Stmt> rest = statements.subList(0, statements.size() - 1);
+        CountedLoops uses = new CountedLoops(name);
+        uses.scanStmts(rest);
+        if (uses.bound || name.equals("_")) {
+            return null;
+        }
+        return new CountedLoop(variable, condition.getOp(), limit, step, rest, uses.read);
+    }
+
+    private static Expr unwrap(Expr expr) {
+        while (expr instanceof GroupingExpr grouping) {
+            expr = grouping.getExpr();
+        }
+        return expr;
+    }
+
+    private static boolean isComparison(TokenType type) {
+        return type == LESSER || type == LESSER_EQUAL || type == GREATER || type == GREATER_EQUAL;
+    }
+
+    // The constant a statement of the form 'i := i + c', 'i := c + i' or 'i := i - c' adds to i
+    private static Double step(Stmt stmt, VariableExpr variable) {
+        if (!(stmt instanceof ExpressionStmt exprStmt)
+            || !(exprStmt.getExpr() instanceof AssignmentExpr assignment)
+            || !(assignment.getTarget() instanceof VariableExpr target)
+            || target.getDepth() != variable.getDepth()
+            || target.getSlot() != variable.getSlot()
+            || !(unwrap(assignment.getValue()) instanceof BinaryExpr value)) {
+            return null;
+        }
+        Expr left = unwrap(value.getLeft());
+        Expr right = unwrap(value.getRight());
+        if (value.getOp().getType() == PLUS) {
+            if (isVariable(left, variable) && right instanceof LiteralExpr literal && literal.getValue() instanceof Double d) {
+                return d;
+            }
+            if (isVariable(right, variable) && left instanceof LiteralExpr literal && literal.getValue() instanceof Double d) {
+                return d;
+            }
+        } else if (value.getOp().getType() == MINUS) {
+            if (isVariable(left, variable) && right instanceof LiteralExpr literal && literal.getValue() instanceof Double d) {
+                return -d;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVariable(Expr expr, VariableExpr variable) {
+        return expr instanceof VariableExpr varExpr
+            && varExpr.getDepth() == variable.getDepth()
+            && varExpr.getSlot() == variable.getSlot();
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        if (expr.getTarget() instanceof VariableExpr varExpr && varExpr.getIdentifier().getLexeme().equals(name)) {
+            bound = true;
+        }
+        return super.visitAssignmentExpr(expr);
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        if (expr.getIdentifier().getLexeme().equals(name)) {
+            read = true;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        if (stmt.getImports().stream().anyMatch((token) -> token.getLexeme().equals(name))) {
+            bound = true;
+        }
+        return null;
+    }
+}
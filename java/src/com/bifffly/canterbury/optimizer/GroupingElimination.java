@@ -0,0 +1,17 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+
+// Parentheses only matter to the parser; the tree already encodes the grouping
+public class GroupingElimination extends TreeRewriter {
+    @Override
+    public String getName() {
+        return "grouping-elimination";
+    }
+
+    @Override
+    public Expr visitGroupingExpr(GroupingExpr expr) {
+        return rewriteExpr(expr.getExpr());
+    }
+}
@@ -0,0 +1,352 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces calls to small functions with the expression they return. A callee qualifies when its
+ * body is a single return of arithmetic over its own parameters, within the size budget, and the
+ * name it is called through is bound exactly once in its scope by a plain definition that has
+ * already run. Since the body can only refer to its parameters it cannot recurse, and it means the
+ * same thing wherever it is copied to. Arguments have to be literals or variables so that
+ * substituting them for the parameters cannot reorder or repeat side effects, and a variable
+ * argument must still be read by the body before anything else could fail.
+ */
+public class Inliner extends TreeRewriter {
+    // Most expression nodes a callee's body may have to be copied into a call site
+    private static final int BUDGET = 16;
+
+    private static class Scope {
+        // How many times each name is bound in the scope, wherever that happens
+        private final Map<String, Integer> bindings;
+        private final Map<String, FuncExpr> functions = new HashMap<>();
+
+        private Scope(Map<String, Integer> bindings) {
+            this.bindings = bindings;
+        }
+    }
+
+    // Counts the names a list of statements binds in the scope they run in. Loop bodies share
+    // the enclosing scope; functions and blocks outside of loops get their own.
+    private static class Binder extends TreeRewriter {
+        private final Map<String, Integer> bindings = new HashMap<>();
+        private int loopDepth = 0;
+
+        @Override
+        public String getName() {
+            return "binder";
+        }
+
+        private void bind(String name) {
+            bindings.merge(name, 1, Integer::sum);
+        }
+
+        @Override
+        public Expr visitAssignmentExpr(AssignmentExpr expr) {
+            if (expr.getTarget() instanceof VariableExpr varExpr) {
+                bind(varExpr.getIdentifier().getLexeme());
+            }
+            return super.visitAssignmentExpr(expr);
+        }
+
+        @Override
+        public Expr visitFuncExpr(FuncExpr expr) {
+            return expr;
+        }
+
+        @Override
+        public Expr visitMatchExpr(MatchExpr expr) {
+            bind("_");
+            return super.visitMatchExpr(expr);
+        }
+
+        @Override
+        public Expr visitStructExpr(StructExpr expr) {
+            for (AssignmentExpr assignmentExpr : expr.getBody()) {
+                rewriteExpr(assignmentExpr.getValue());
+            }
+            return expr;
+        }
+
+        @Override
+        public Stmt visitBlockStmt(BlockStmt stmt) {
+            return loopDepth > 0 ? super.visitBlockStmt(stmt) : stmt;
+        }
+
+        @Override
+        public Stmt visitImportStmt(ImportStmt stmt) {
+            stmt.getImports().forEach((token) -> bind(token.getLexeme()));
+            return stmt;
+        }
+
+        @Override
+        public Stmt visitWhileStmt(WhileStmt stmt) {
+            loopDepth++;
+            super.visitWhileStmt(stmt);
+            loopDepth--;
+            return stmt;
+        }
+    }
+
+    // Copies a callee's body with its parameters replaced by the call's arguments
+    private static class Substitution extends TreeRewriter {
+        private final Map<String, Expr> args;
+
+        private Substitution(Map<String, Expr> args) {
+            this.args = args;
+        }
+
+        @Override
+        public String getName() {
+            return "substitution";
+        }
+
+        @Override
+        public Expr visitVariableExpr(VariableExpr expr) {
+            Expr arg = args.get(expr.getIdentifier().getLexeme());
+            if (arg instanceof VariableExpr varExpr) {
+                return new VariableExpr(varExpr.getIdentifier());
+            }
+            return arg;
+        }
+    }
+
+    // Globals typed at the REPL can be rebound by a later line, so they are never inlined there
+    private final boolean inlineGlobals;
+    private final List<Scope> scopes = new ArrayList<>();
+    private int loopDepth = 0;
+
+    public Inliner(boolean inlineGlobals) {
+        this.inlineGlobals = inlineGlobals;
+    }
+
+    @Override
+    public String getName() {
+        return "inliner";
+    }
+
+    @Override
+    public List<Stmt> run(List<Stmt> stmts) {
+        return rewriteScope(List.of(), stmts, inlineGlobals);
+    }
+
+    private List<Stmt> rewriteScope(List<String> names, List<Stmt> stmts, boolean defines) {
+        Binder binder = new Binder();
+        names.forEach(binder::bind);
+        binder.rewrite(stmts);
+        Scope scope = new Scope(binder.bindings);
+
+        scopes.add(scope);
+        List<Stmt> rewritten = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            Stmt result = rewriteStmt(stmt);
+            if (result == null) {
+                continue;
+            }
+            rewritten.add(result);
+            if (defines && result instanceof ExpressionStmt exprStmt
+                && exprStmt.getExpr() instanceof AssignmentExpr assignmentExpr
+                && assignmentExpr.getTarget() instanceof VariableExpr varExpr
+                && assignmentExpr.getValue() instanceof FuncExpr func) {
+                String name = varExpr.getIdentifier().getLexeme();
+                if (scope.bindings.get(name) == 1 && inlineable(func)) {
+                    scope.functions.put(name, func);
+                }
+            }
+        }
+        scopes.remove(scopes.size() - 1);
+        return rewritten;
+    }
+
+    // The function a call through this name is known to reach, or null
+    private FuncExpr lookup(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Scope scope = scopes.get(i);
+            if (scope.bindings.containsKey(name)) {
+                return scope.functions.get(name);
+            }
+        }
+        return null;
+    }
+
+    private static boolean inlineable(FuncExpr func) {
+        Set<String> params = new HashSet<>();
+        for (Token param : func.getParams()) {
+            params.add(param.getLexeme());
+        }
+        List<Stmt> body = func.getBody().getStatements();
+        if (params.size() != func.getParams().size() || body.size() != 1
+            || !(body.get(0) instanceof ReturnStmt returnStmt) || returnStmt.getValue() == null) {
+            return false;
+        }
+        int size = size(returnStmt.getValue(), params);
+        return size >= 0 && size <= BUDGET;
+    }
+
+    // Number of nodes in an expression, or -1 if it does anything but arithmetic over params
+    private static int size(Expr expr, Set<String> params) {
+        if (expr instanceof LiteralExpr) {
+            return 1;
+        } else if (expr instanceof VariableExpr varExpr) {
+            return params.contains(varExpr.getIdentifier().getLexeme()) ? 1 : -1;
+        } else if (expr instanceof GroupingExpr groupingExpr) {
+            return size(groupingExpr.getExpr(), params);
+        } else if (expr instanceof UnaryExpr unaryExpr) {
+            int operand = size(unaryExpr.getExpr(), params);
+            return operand < 0 ? -1 : operand + 1;
+        } else if (expr instanceof BinaryExpr binaryExpr) {
+            return size(binaryExpr.getLeft(), binaryExpr.getRight(), params);
+        } else if (expr instanceof LogicalExpr logicalExpr) {
+            return size(logicalExpr.getLeft(), logicalExpr.getRight(), params);
+        }
+        return -1;
+    }
+
+    private static int size(Expr left, Expr right, Set<String> params) {
+        int leftSize = size(left, params);
+        int rightSize = size(right, params);
+        return leftSize < 0 || rightSize < 0 ? -1 : leftSize + rightSize + 1;
+    }
+
+    @Override
+    public Expr visitCallExpr(CallExpr expr) {
+        CallExpr rewritten = (CallExpr) super.visitCallExpr(expr);
+        if (!(rewritten.getCallee() instanceof VariableExpr callee)) {
+            return rewritten;
+        }
+        FuncExpr func = lookup(callee.getIdentifier().getLexeme());
+        if (func == null || func.getParams().size() != rewritten.getArgs().size()) {
+            return rewritten;
+        }
+
+        Map<String, Expr> args = new HashMap<>();
+        List<String> variables = new ArrayList<>();
+        for (int i = 0; i < rewritten.getArgs().size(); i++) {
+            Expr arg = rewritten.getArgs().get(i);
+            String param = func.getParams().get(i).getLexeme();
+            if (arg instanceof VariableExpr) {
+                variables.add(param);
+            } else if (!(arg instanceof LiteralExpr)) {
+                return rewritten;
+            }
+            args.put(param, arg);
+        }
+        ReturnStmt body = (ReturnStmt) func.getBody().getStatements().get(0);
+        if (!readsInOrder(body.getValue(), variables)) {
+            return rewritten;
+        }
+        return new Substitution(args).rewriteExpr(body.getValue());
+    }
+
+    // Reading a variable argument fails if it is undefined, so the body must read every parameter
+    // passed one, first in the order the arguments were given and before any operator that could
+    // fail itself. Otherwise the inlined call could drop or reorder the error the call would raise.
+    private static boolean readsInOrder(Expr body, List<String> params) {
+        List<String> events = new ArrayList<>();
+        evaluation(body, events);
+        Set<String> seen = new HashSet<>();
+        int next = 0;
+        for (String event : events) {
+            if (event == null) {
+                if (next < params.size()) {
+                    return false;
+                }
+            } else if (params.contains(event) && seen.add(event)) {
+                if (next >= params.size() || !params.get(next).equals(event)) {
+                    return false;
+                }
+                next++;
+            }
+        }
+        return next == params.size();
+    }
+
+    // The variables an inlineable body reads in evaluation order, with null for each operator
+    // that can fail; logical operators never do
+    private static void evaluation(Expr expr, List<String> events) {
+        if (expr instanceof VariableExpr varExpr) {
+            events.add(varExpr.getIdentifier().getLexeme());
+        } else if (expr instanceof GroupingExpr groupingExpr) {
+            evaluation(groupingExpr.getExpr(), events);
+        } else if (expr instanceof UnaryExpr unaryExpr) {
+            evaluation(unaryExpr.getExpr(), events);
+            events.add(null);
+        } else if (expr instanceof BinaryExpr binaryExpr) {
+            evaluation(binaryExpr.getLeft(), events);
+            evaluation(binaryExpr.getRight(), events);
+            events.add(null);
+        } else if (expr instanceof LogicalExpr logicalExpr) {
+            evaluation(logicalExpr.getLeft(), events);
+            evaluation(logicalExpr.getRight(), events);
+        }
+    }
+
+    @Override
+    public Expr visitFuncExpr(FuncExpr expr) {
+        int enclosingLoopDepth = loopDepth;
+        loopDepth = 0;
+        List<String> params = expr.getParams().stream().map(Token::getLexeme).toList();
+        List<Stmt> body = rewriteScope(params, expr.getBody().getStatements(), true);
+        loopDepth = enclosingLoopDepth;
+        return new FuncExpr(expr.getDecl(), expr.getParams(), new BlockStmt(body));
+    }
+
+    @Override
+    public Expr visitStructExpr(StructExpr expr) {
+        List<AssignmentExpr> body = new ArrayList<>(expr.getBody().size());
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            if (!(assignmentExpr.getValue() instanceof FuncExpr)) {
+                body.add((AssignmentExpr) rewriteExpr(assignmentExpr));
+                continue;
+            }
+            // Methods run inside the struct params and 'self'
+            Map<String, Integer> bindings = new HashMap<>();
+            expr.getParams().forEach((param) -> bindings.put(param.getLexeme(), 1));
+            bindings.put("self", 1);
+            scopes.add(new Scope(bindings));
+            body.add((AssignmentExpr) rewriteExpr(assignmentExpr));
+            scopes.remove(scopes.size() - 1);
+        }
+        return new StructExpr(expr.getDecl(), expr.getParams(), body);
+    }
+
+    @Override
+    public Stmt visitBlockStmt(BlockStmt stmt) {
+        if (loopDepth > 0) {
+            return super.visitBlockStmt(stmt);
+        }
+        return new BlockStmt(rewriteScope(List.of(), stmt.getStatements(), true));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(WhileStmt stmt) {
+        loopDepth++;
+        Stmt rewritten = super.visitWhileStmt(stmt);
+        loopDepth--;
+        return rewritten;
+    }
+}
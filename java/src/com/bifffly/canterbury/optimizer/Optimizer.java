@@ -0,0 +1,44 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.stmt.Stmt;
+
+import java.util.List;
+
+// Runs a sequence of passes over the parsed tree, each one seeing the output of the last
+public class Optimizer {
+    private final List<Pass> passes;
+
+    public Optimizer(List<Pass> passes) {
+        this.passes = passes;
+    }
+
+    public static Optimizer standard() {
+        return standard(true);
+    }
+
+    // The REPL runs each line on its own, so it cannot assume a global is never rebound
+    public static Optimizer interactive() {
+        return standard(false);
+    }
+
+    private static Optimizer standard(boolean wholeProgram) {
+        return new Optimizer(List.of(
+            new GroupingElimination(),
+            new Inliner(wholeProgram),
+            new ConstantFolding(),
+            new BranchPruning(),
+            new UnreachableCode()
+        ));
+    }
+
+    public List<Pass> getPasses() {
+        return passes;
+    }
+
+    public List<Stmt> optimize(List<Stmt> stmts) {
+        for (Pass pass : passes) {
+            stmts = pass.run(stmts);
+        }
+        return stmts;
+    }
+}
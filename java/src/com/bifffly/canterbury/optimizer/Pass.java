@@ -0,0 +1,11 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.stmt.Stmt;
+
+import java.util.List;
+
+// A transformation of the parsed tree, run before the resolver sees it
+public interface Pass {
+    public String getName();
+    public List<Stmt> run(List<Stmt> stmts);
+}
@@ -0,0 +1,131 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.object.Bindable;
+import com.bifffly.canterbury.object.Instance;
+import com.bifffly.canterbury.object.Struct;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.Capture;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Looks for what makes a function impure: assigning a property, which covers 'self', or reading a
+ * name bound to something with side effects. Names are looked up by value where the function can
+ * see them now, in its upvalues or the globals, so a user function that happens to be called
+ * print is fine while a call reaching IO under any name is not. Functions, structs and instances
+ * the body names are followed into, as are nested functions. Locals and parameters only have a
+ * value once the function runs, so effects reached through them are left to the caller to catch.
+ */
+public class Purity extends TreeScanner {
+    private final Environment globals;
+    private final Predicate<Object> effectful;
+    private final Set<FuncExpr> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Upvalues of the function being scanned, with null for those that are not known yet
+    private Cell[] upvalues;
+    // The name in the function itself through which the scan reached the function it is in
+    private Token entry;
+    private Token impurity;
+
+    private Purity(Environment globals, Predicate<Object> effectful) {
+        this.globals = globals;
+        this.effectful = effectful;
+    }
+
+    // The token of the first impure operation the function reaches, or null if there is none
+    public static Token impurity(Bindable function, Environment globals, Predicate<Object> effectful) {
+        Purity purity = new Purity(globals, effectful);
+        purity.scan(function.getExpr(), function.getUpvalues(), null);
+        return purity.impurity;
+    }
+
+    private void scan(FuncExpr func, Cell[] upvalues, Token via) {
+        if (impurity != null || !seen.add(func)) {
+            return;
+        }
+        Cell[] enclosingUpvalues = this.upvalues;
+        Token enclosingEntry = entry;
+        this.upvalues = upvalues;
+        if (entry == null) {
+            entry = via;
+        }
+        scanStmts(func.getBody().getStatements());
+        this.upvalues = enclosingUpvalues;
+        entry = enclosingEntry;
+    }
+
+    private void flag(Token token) {
+        if (impurity == null) {
+            impurity = entry != null ? entry : token;
+        }
+    }
+
+    private void inspect(Object value, Token token) {
+        if (effectful.test(value)) {
+            flag(token);
+        } else if (value instanceof Bindable function) {
+            scan(function.getExpr(), function.getUpvalues(), token);
+        } else if (value instanceof Instance instance) {
+            inspect(instance.getStruct(), token);
+        } else if (value instanceof Struct struct) {
+            for (Object attribute : struct.getAttributes()) {
+                inspect(attribute, token);
+            }
+        }
+    }
+
+    private Object valueOf(VariableExpr expr) {
+        if (expr.getUpvalue() >= 0) {
+            Cell cell = upvalues == null ? null : upvalues[expr.getUpvalue()];
+            return cell == null ? null : cell.getValue();
+        }
+        if (expr.getDepth() < 0 && !expr.isMatched()) {
+            return globals.getEnv().get(expr.getIdentifier().getLexeme());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        if (expr.getTarget() instanceof GetExpr get) {
+            flag(get.getIdentifier());
+        }
+        if (!(expr.getTarget() instanceof VariableExpr)) {
+            scanExpr(expr.getTarget());
+        }
+        scanExpr(expr.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncExpr(FuncExpr expr) {
+        // A nested function sees the upvalues of this one it captures, and none of its locals
+        List<Capture> captures = expr.getCaptures();
+        Cell[] cells = new Cell[captures.size()];
+        for (int i = 0; i < cells.length; i++) {
+            Capture capture = captures.get(i);
+            if (capture.getDepth() < 0 && upvalues != null) {
+                cells[i] = upvalues[capture.getUpvalue()];
+            }
+        }
+        scan(expr, cells, null);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        if (impurity == null) {
+            inspect(valueOf(expr), expr.getIdentifier());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base for passes that rewrite the tree bottom-up. Every visit rebuilds its node from rewritten
+ * children, so a pass only overrides the nodes it changes. A statement rewritten to null is
+ * dropped from the list it is in, or replaced by an empty block where a statement is required.
+ */
+public abstract class TreeRewriter implements Pass, ExprVisitor<Expr>, StmtVisitor<Stmt> {
+    @Override
+    public List<Stmt> run(List<Stmt> stmts) {
+        return rewrite(stmts);
+    }
+
+    protected Expr rewriteExpr(Expr expr) {
+        return expr == null ? null : expr.accept(this);
+    }
+
+    protected Stmt rewriteStmt(Stmt stmt) {
+        return stmt == null ? null : (Stmt) stmt.accept(this);
+    }
+
+    protected List<Stmt> rewrite(List<Stmt> stmts) {
+        List<Stmt> rewritten = new ArrayList<>(stmts.size());
+        for (Stmt stmt : stmts) {
+            Stmt result = rewriteStmt(stmt);
+            if (result != null) {
+                rewritten.add(result);
+            }
+        }
+        return rewritten;
+    }
+
+    // For positions that must hold a statement, like a loop body
+    protected Stmt required(Stmt stmt) {
+        Stmt result = rewriteStmt(stmt);
+        return result == null ? new BlockStmt(List.of()) : result;
+    }
+
+    private List<Expr> rewriteExprs(List<Expr> exprs) {
+        List<Expr> rewritten = new ArrayList<>(exprs.size());
+        exprs.forEach((expr) -> rewritten.add(rewriteExpr(expr)));
+        return rewritten;
+    }
+
+    @Override
+    public Expr visitAssignmentExpr(AssignmentExpr expr) {
+        return new AssignmentExpr(rewriteExpr(expr.getTarget()), rewriteExpr(expr.getValue()));
+    }
+
+    @Override
+    public Expr visitBinaryExpr(BinaryExpr expr) {
+        return new BinaryExpr(rewriteExpr(expr.getLeft()), expr.getOp(), rewriteExpr(expr.getRight()));
+    }
+
+    @Override
+    public Expr visitCallExpr(CallExpr expr) {
+        return new CallExpr(rewriteExpr(expr.getCallee()), expr.getBracket(), rewriteExprs(expr.getArgs()));
+    }
+
+    @Override
+    public Expr visitCaseExpr(CaseExpr expr) {
+        return new CaseExpr(rewriteExpr(expr.getCondition()), rewriteExpr(expr.getThen()));
+    }
+
+    @Override
+    public Expr visitFuncExpr(FuncExpr expr) {
+        return new FuncExpr(expr.getDecl(), expr.getParams(), new BlockStmt(rewrite(expr.getBody().getStatements())));
+    }
+
+    @Override
+    public Expr visitGetExpr(GetExpr expr) {
+        return new GetExpr(rewriteExpr(expr.getExpr()), expr.getIdentifier());
+    }
+
+    @Override
+    public Expr visitGroupingExpr(GroupingExpr expr) {
+        return new GroupingExpr(rewriteExpr(expr.getExpr()));
+    }
+
+    @Override
+    public Expr visitLiteralExpr(LiteralExpr expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(LogicalExpr expr) {
+        return new LogicalExpr(rewriteExpr(expr.getLeft()), expr.getOp(), rewriteExpr(expr.getRight()));
+    }
+
+    @Override
+    public Expr visitMatchExpr(MatchExpr expr) {
+        List<CaseExpr> cases = new ArrayList<>(expr.getCases().size());
+        for (CaseExpr caseExpr : expr.getCases()) {
+            cases.add((CaseExpr) rewriteExpr(caseExpr));
+        }
+        return new MatchExpr(expr.getToken(), rewriteExpr(expr.getExpr()), cases);
+    }
+
+    @Override
+    public Expr visitSelfExpr(SelfExpr expr) {
+        return new SelfExpr(expr.getSelf());
+    }
+
+    @Override
+    public Expr visitStructExpr(StructExpr expr) {
+        List<AssignmentExpr> body = new ArrayList<>(expr.getBody().size());
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            body.add((AssignmentExpr) rewriteExpr(assignmentExpr));
+        }
+        return new StructExpr(expr.getDecl(), expr.getParams(), body);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(UnaryExpr expr) {
+        return new UnaryExpr(expr.getOp(), rewriteExpr(expr.getExpr()));
+    }
+
+    @Override
+    public Expr visitVariableExpr(VariableExpr expr) {
+        return new VariableExpr(expr.getIdentifier());
+    }
+
+    @Override
+    public Stmt visitBlockStmt(BlockStmt stmt) {
+        return new BlockStmt(rewrite(stmt.getStatements()));
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(ExpressionStmt stmt) {
+        return new ExpressionStmt(rewriteExpr(stmt.getExpr()));
+    }
+
+    @Override
+    public Stmt visitIfStmt(IfStmt stmt) {
+        return new IfStmt(rewriteExpr(stmt.getCondition()), required(stmt.getThenBranch()),
+                rewriteStmt(stmt.getElseBranch()));
+    }
+
+    @Override
+    public Stmt visitImportStmt(ImportStmt stmt) {
+        return new ImportStmt(stmt.getModule(), stmt.getImports());
+    }
+
+    @Override
+    public Stmt visitReturnStmt(ReturnStmt stmt) {
+        return new ReturnStmt(stmt.getToken(), rewriteExpr(stmt.getValue()));
+    }
+
+    @Override
+    public Stmt visitWhileStmt(WhileStmt stmt) {
+        return new WhileStmt(rewriteExpr(stmt.getCondition()), required(stmt.getBody()));
+    }
+}
@@ -0,0 +1,184 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+
+import java.util.List;
+
+/**
+ * Base for analyses that only read the tree. Every visit walks the children of its node in
+ * evaluation order and builds nothing, so an analysis only overrides the nodes it looks at.
+ * Nested functions and struct bodies are walked like any other node.
+ */
+public abstract class TreeScanner implements ExprVisitor<Void>, StmtVisitor<Void> {
+    protected void scanExpr(Expr expr) {
+        if (expr != null) {
+            expr.accept(this);
+        }
+    }
+
+    protected void scanStmt(Stmt stmt) {
+        if (stmt != null) {
+            stmt.accept(this);
+        }
+    }
+
+    protected void scanStmts(List<Stmt> stmts) {
+        for (Stmt stmt : stmts) {
+            scanStmt(stmt);
+        }
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        scanExpr(expr.getTarget());
+        scanExpr(expr.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        scanExpr(expr.getLeft());
+        scanExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        scanExpr(expr.getCallee());
+        for (Expr arg : expr.getArgs()) {
+            scanExpr(arg);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCaseExpr(CaseExpr expr) {
+        scanExpr(expr.getCondition());
+        scanExpr(expr.getThen());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncExpr(FuncExpr expr) {
+        scanStmts(expr.getBody().getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        scanExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        scanExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        scanExpr(expr.getLeft());
+        scanExpr(expr.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visitMatchExpr(MatchExpr expr) {
+        scanExpr(expr.getExpr());
+        for (CaseExpr caseExpr : expr.getCases()) {
+            scanExpr(caseExpr);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitSelfExpr(SelfExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitStructExpr(StructExpr expr) {
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            scanExpr(assignmentExpr);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        scanExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        scanStmts(stmt.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        scanExpr(stmt.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt stmt) {
+        scanExpr(stmt.getCondition());
+        scanStmt(stmt.getThenBranch());
+        scanStmt(stmt.getElseBranch());
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt stmt) {
+        scanExpr(stmt.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt stmt) {
+        scanExpr(stmt.getCondition());
+        scanStmt(stmt.getBody());
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bifffly.canterbury.optimizer;
+
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Drops statements that follow a return in the same list
+public class UnreachableCode extends TreeRewriter {
+    @Override
+    public String getName() {
+        return "unreachable-code";
+    }
+
+    @Override
+    protected List<Stmt> rewrite(List<Stmt> stmts) {
+        List<Stmt> rewritten = super.rewrite(stmts);
+        for (int i = 0; i < rewritten.size(); i++) {
+            if (rewritten.get(i) instanceof ReturnStmt) {
+                return new ArrayList<>(rewritten.subList(0, i + 1));
+            }
+        }
+        return rewritten;
+    }
+}
@@ -0,0 +1,172 @@
+package com.bifffly.canterbury.parser;
+
+import com.bifffly.canterbury.ErrorReporter;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.tokens.Source;
+import com.bifffly.canterbury.tokens.Tokenizer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses large files as independent chunks on the common fork/join pool. Chunks end after a
+ * semicolon at bracket depth zero that isn't followed by an 'elif' or 'else', where a statement
+ * has to be complete. The split is found in the mapped bytes, which UTF-8 lets us do without
+ * decoding since every byte of a multi-byte character is outside ASCII. Each chunk gets its own
+ * source, tokenizer, parser and errors, starting at the line it begins on, and the results are
+ * joined back together in source order.
+ */
+public class ParallelParser {
+    private static final int CHUNK = 1 << 18;
+
+    private final Source src;
+    private final ByteBuffer bytes;
+    private final ErrorReporter errors;
+
+    public ParallelParser(Source src, ErrorReporter errors) {
+        this.src = src;
+        this.bytes = src.bytes();
+        this.errors = errors;
+    }
+
+    // Only files are split, since text given as a string has no bytes to look for a split in
+    public static boolean worthSplitting(Source src) {
+        return src.bytes() != null && src.sizeHint() >= 4L * CHUNK;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    private static class Chunk {
+        private final int from;
+        private final int to;
+        private final int line;
+        private final ErrorReporter errors;
+
+        private List<Stmt> parse(Source src) {
+            return new Parser(new Tokenizer(src.slice(from, to), errors, 0, Integer.MAX_VALUE, line).pull(), errors).parse();
+        }
+    }
+
+    public List<Stmt> parse() {
+        List<Chunk> chunks = split();
+        List<ForkJoinTask<List<Stmt>>> tasks = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> chunk.parse(src)));
+        }
+
+        List<Stmt> stmts = new ArrayList<>();
+        RuntimeException failure = null;
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                stmts.addAll(tasks.get(i).join());
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            errors.addAll(chunks.get(i).getErrors());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return stmts;
+    }
+
+    private List<Chunk> split() {
+        List<Chunk> chunks = new ArrayList<>();
+        int length = bytes.limit();
+        int from = 0;
+        int line = 1;
+        int lines = 0;
+        int depth = 0;
+        int i = 0;
+        while (i < length) {
+            byte b = bytes.get(i++);
+            switch (b) {
+                case '\n': lines++; break;
+                case '(':
+                case '[':
+                case '{': depth++; break;
+                case ')':
+                case ']':
+                case '}': depth--; break;
+                case '#': i = indexOf((byte) '\n', i); break;
+                case '"':
+                case '\'': {
+                    int close = indexOf(b, i);
+                    for (int j = i; j < close; j++) {
+                        if (bytes.get(j) == '\n') {
+                            lines++;
+                        }
+                    }
+                    i = close + 1;
+                    break;
+                }
+                case ';': {
+                    if (depth == 0 && i - from >= CHUNK && !continues(i)) {
+                        chunks.add(new Chunk(from, i, line, new ErrorReporter()));
+                        from = i;
+                        line += lines;
+                        lines = 0;
+                    }
+                    break;
+                }
+                default: break;
+            }
+        }
+        chunks.add(new Chunk(from, length, line, new ErrorReporter()));
+        return chunks;
+    }
+
+    // Index of the first b at or after from, or the end of the file
+    private int indexOf(byte b, int from) {
+        int i = from;
+        while (i < bytes.limit() && bytes.get(i) != b) {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < bytes.limit()) {
+            byte b = bytes.get(i);
+            if (b != ' ' && b != '\n' && b != '\t' && b != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // Whether the statement ending at i carries on into an 'elif' or 'else' branch
+    private boolean continues(int i) {
+        i = skipWhitespace(i);
+        while (i < bytes.limit() && bytes.get(i) == '#') {
+            i = skipWhitespace(indexOf((byte) '\n', i));
+        }
+        return isWord(i, "elif") || isWord(i, "else");
+    }
+
+    private boolean isWord(int i, String word) {
+        int end = i + word.length();
+        if (end > bytes.limit()) {
+            return false;
+        }
+        for (int j = 0; j < word.length(); j++) {
+            if (bytes.get(i + j) != word.charAt(j)) {
+                return false;
+            }
+        }
+        // Any byte outside ASCII belongs to a character that could carry on the word
+        return end == bytes.limit() || !isWordByte(bytes.get(end));
+    }
+
+    private static boolean isWordByte(byte b) {
+        return b < 0 || Character.isLetterOrDigit(b) || b == '_';
+    }
+}
@@ -1,6 +1,6 @@
 package com.bifffly.canterbury.parser;
 
-import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.ErrorReporter;
 import com.bifffly.canterbury.parser.expr.AssignmentExpr;
 import com.bifffly.canterbury.parser.expr.BinaryExpr;
 import com.bifffly.canterbury.parser.expr.CallExpr;
@@ -24,6 +24,7 @@ import com.bifffly.canterbury.parser.stmt.ReturnStmt;
 import com.bifffly.canterbury.parser.stmt.Stmt;
 import com.bifffly.canterbury.parser.stmt.WhileStmt;
 import com.bifffly.canterbury.tokens.Token;
+import com.bifffly.canterbury.tokens.TokenStream;
 import com.bifffly.canterbury.tokens.TokenType;
 
 import java.util.ArrayList;
@@ -34,11 +35,13 @@ import static com.bifffly.canterbury.tokens.TokenType.*;
 public class Parser {
     private static class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
+    private final TokenStream tokens;
+    private final ErrorReporter errors;
     private int curr = 0;
 
-    public Parser(List<Token> tokens) {
+    public Parser(TokenStream tokens, ErrorReporter errors) {
         this.tokens = tokens;
+        this.errors = errors;
     }
 
     public List<Stmt> parse() {
@@ -50,26 +53,27 @@ public class Parser {
     }
 
     private boolean hasNext() {
-        return peek().getType() != EOF;
+        return tokens.type(curr) != EOF;
     }
 
+    // Token objects are only built for tokens that end up in the tree or in an error
     private Token peek() {
-        return tokens.get(curr);
+        return tokens.token(curr);
     }
 
     private Token previous() {
-        return tokens.get(curr - 1);
+        return tokens.token(curr - 1);
     }
 
     private ParseError error(Token token, String message) {
-        Canterbury.error(token, message);
+        errors.error(token, message);
         return new ParseError();
     }
 
     private void synchronize() {
         advance();
         while (hasNext()) {
-            switch (peek().getType()) {
+            switch (tokens.type(curr)) {
                 case FUNC:
                 case STRUCT:
                 case FOR:
@@ -83,14 +87,13 @@ public class Parser {
     }
 
     private boolean check(TokenType type) {
-        return hasNext() && peek().getType() == type;
+        return hasNext() && tokens.type(curr) == type;
     }
 
-    private Token advance() {
+    private void advance() {
         if (hasNext()) {
             curr++;
         }
-        return previous();
     }
 
     private boolean match(TokenType... types) {
@@ -105,7 +108,8 @@ public class Parser {
 
     private Token consume(TokenType type, String message) {
         if (check(type)) {
-            return advance();
+            advance();
+            return previous();
         }
         throw error(peek(), message);
     }
@@ -462,7 +466,7 @@ public class Parser {
             return new LiteralExpr(null);
         }
         if (match(NUM, STR)) {
-            return new LiteralExpr(previous().getValue());
+            return new LiteralExpr(tokens.value(curr - 1));
         }
         if (match(SELF)) {
             return new SelfExpr(previous());
@@ -1,19 +1,23 @@
 package com.bifffly.canterbury.parser.expr;
 
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.util.List;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class CallExpr implements Expr {
-    private Expr callee;
-    private Token bracket;
-    private List<Expr> args;
+    private final Expr callee;
+    private final Token bracket;
+    private final List<Expr> args;
+    // Set by the resolver when the call's value is returned as is by the enclosing function
+    @Setter
+    private boolean tail = false;
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
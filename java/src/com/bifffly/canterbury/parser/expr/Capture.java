@@ -0,0 +1,14 @@
+package com.bifffly.canterbury.parser.expr;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A variable a function closes over: either a slot of the environment it is created in,
+// or an upvalue of the enclosing function when depth is -1
+@AllArgsConstructor
+@Getter
+public class Capture {
+    private final int depth;
+    private final int slot;
+    private final int upvalue;
+}
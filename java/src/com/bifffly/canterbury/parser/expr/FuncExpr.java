@@ -1,20 +1,34 @@
 package com.bifffly.canterbury.parser.expr;
 
+import com.bifffly.canterbury.jit.Profile;
 import com.bifffly.canterbury.parser.stmt.BlockStmt;
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.util.List;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class FuncExpr implements Expr {
-    private Token decl;
-    private List<Token> params;
-    private BlockStmt body;
+    private final Token decl;
+    private final List<Token> params;
+    private final BlockStmt body;
+    // Set by the resolver; the number of slots in the function's scope, parameters first
+    @Setter
+    private int slots = 0;
+    // Set by the resolver; the variables the function closes over, in upvalue order
+    @Setter
+    private List<Capture> captures = List.of();
+    // Set by the resolver; whether the function is declared in a struct body and bound to each instance
+    @Setter
+    private boolean method = false;
+    // Call counts and compiled code kept by the JIT
+    @EqualsAndHashCode.Exclude
+    private final Profile profile = new Profile();
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
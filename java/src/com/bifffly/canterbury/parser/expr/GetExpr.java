@@ -1,16 +1,23 @@
 package com.bifffly.canterbury.parser.expr;
 
+import com.bifffly.canterbury.object.InlineCache;
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 
-@AllArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class GetExpr implements Expr {
-    private Expr expr;
-    private Token identifier;
+    private final Expr expr;
+    private final Token identifier;
+    @EqualsAndHashCode.Exclude
+    private final InlineCache cache;
+
+    public GetExpr(Expr expr, Token identifier) {
+        this.expr = expr;
+        this.identifier = identifier;
+        this.cache = new InlineCache(identifier);
+    }
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
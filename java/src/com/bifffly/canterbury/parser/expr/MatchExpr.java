@@ -1,17 +1,28 @@
 package com.bifffly.canterbury.parser.expr;
 
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.util.List;
 
-@AllArgsConstructor
 @Getter
 public class MatchExpr implements Expr {
-    private Token token;
-    private Expr expr;
-    private List<CaseExpr> cases;
+    private final Token token;
+    private final Expr expr;
+    private final List<CaseExpr> cases;
+    // Lookups for the runs of literal cases, indexed by the case each run starts at
+    private final MatchTable[] tables;
+    // Set by the resolver; the slot '_' is bound to, or -1 when it is global
+    @Setter
+    private int slot = -1;
+
+    public MatchExpr(Token token, Expr expr, List<CaseExpr> cases) {
+        this.token = token;
+        this.expr = expr;
+        this.cases = cases;
+        this.tables = MatchTable.of(cases);
+    }
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
@@ -0,0 +1,102 @@
+package com.bifffly.canterbury.parser.expr;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatch for a run of consecutive match cases whose conditions are literals other than booleans.
+ * Such a case matches exactly when the value equals its literal, so the whole run is one lookup
+ * from the value to the first case holding it rather than a test per case. Integral numbers over a
+ * small range index an array, anything else goes through a hash map. Cases with any other
+ * condition are guards and are still tested in order.
+ */
+@Getter
+public class MatchTable {
+    // Largest number of unused entries a dense table may carry per case
+    private static final int SPREAD = 2;
+
+    // Cases [start, end) of the match
+    private final int start;
+    private final int end;
+    private final Map<Object, Integer> cases = new HashMap<>();
+    private final Object[] literals;
+    // Present when every literal is an integral number; entry i is the case for min + i, or -1
+    private int[] dense;
+    private int min;
+
+    private MatchTable(List<CaseExpr> run, int start) {
+        this.start = start;
+        this.end = start + run.size();
+        this.literals = new Object[run.size()];
+        for (int i = 0; i < run.size(); i++) {
+            literals[i] = ((LiteralExpr) run.get(i).getCondition()).getValue();
+            cases.putIfAbsent(literals[i], i);
+        }
+        densify();
+    }
+
+    // Tables for every run of literal cases, at the index their run starts; other entries are null
+    public static MatchTable[] of(List<CaseExpr> cases) {
+        MatchTable[] tables = new MatchTable[cases.size()];
+        int i = 0;
+        while (i < cases.size()) {
+            int start = i;
+            while (i < cases.size() && isLiteral(cases.get(i))) {
+                i++;
+            }
+            if (i > start) {
+                tables[start] = new MatchTable(cases.subList(start, i), start);
+            } else {
+                i++;
+            }
+        }
+        return tables;
+    }
+
+    private static boolean isLiteral(CaseExpr caseExpr) {
+        return caseExpr.getCondition() instanceof LiteralExpr literal && !(literal.getValue() instanceof Boolean);
+    }
+
+    private void densify() {
+        double low = Double.POSITIVE_INFINITY;
+        double high = Double.NEGATIVE_INFINITY;
+        for (Object literal : literals) {
+            if (!(literal instanceof Double d) || d != Math.rint(d) || Math.abs(d) > Integer.MAX_VALUE / 2) {
+                return;
+            }
+            low = Math.min(low, d);
+            high = Math.max(high, d);
+        }
+        if (high - low + 1 > (double) literals.length * (SPREAD + 1)) {
+            return;
+        }
+        min = (int) low;
+        dense = new int[(int) (high - low) + 1];
+        Arrays.fill(dense, -1);
+        for (int i = literals.length - 1; i >= 0; i--) {
+            dense[(int) ((Double) literals[i] - low)] = i;
+        }
+    }
+
+    public int size() {
+        return end - start;
+    }
+
+    // Position within the run of the first case matching the value, or -1
+    public int lookup(Object value) {
+        if (dense == null) {
+            Integer index = cases.get(value);
+            return index == null ? -1 : index;
+        }
+        if (!(value instanceof Double d) || d < min || d - min >= dense.length) {
+            return -1;
+        }
+        int index = dense[(int) (d - min)];
+        // Equality is Double.equals, which tells -0.0 and fractions apart from the slot they land in
+        return index >= 0 && literals[index].equals(value) ? index : -1;
+    }
+}
@@ -1,15 +1,28 @@
 package com.bifffly.canterbury.parser.expr;
 
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class SelfExpr implements Expr {
-    private Token self;
+    private final Token self;
+    // Set by the resolver; with neither a depth nor an upvalue, 'self' is unbound
+    private int depth = -1;
+    private int slot = -1;
+    private int upvalue = -1;
+
+    public void resolve(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    public void resolveUpvalue(int upvalue) {
+        this.upvalue = upvalue;
+    }
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
@@ -1,15 +1,32 @@
 package com.bifffly.canterbury.parser.expr;
 
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
-import lombok.Builder;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
-@AllArgsConstructor
-@Builder
+@RequiredArgsConstructor
 @Getter
 public class VariableExpr implements Expr {
     private final Token identifier;
+    // Set by the resolver; with neither a depth nor an upvalue the variable is global
+    private int depth = -1;
+    private int slot = -1;
+    private int upvalue = -1;
+    // Set by the resolver for '_' read inside a top-level match, which is not kept in the globals
+    private boolean matched = false;
+
+    public void resolve(int depth, int slot) {
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    public void resolveUpvalue(int upvalue) {
+        this.upvalue = upvalue;
+    }
+
+    public void resolveMatched() {
+        this.matched = true;
+    }
 
     @Override
     public <T> T accept(ExprVisitor<T> exprVisitor) {
@@ -1,16 +1,22 @@
 package com.bifffly.canterbury.parser.stmt;
 
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.util.List;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class BlockStmt implements Stmt {
-    private List<Stmt> statements;
+    private final List<Stmt> statements;
+    // Set by the resolver; blocks inside loop bodies share the enclosing scope
+    @Setter
+    private boolean scoped = false;
+    @Setter
+    private int slots = 0;
 
     @Override
     public <T> Object accept(StmtVisitor<T> stmtVisitor) {
@@ -0,0 +1,25 @@
+package com.bifffly.canterbury.parser.stmt;
+
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.tokens.Token;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+// A loop that steps a local number by a constant until it passes a bound, as for loops usually do
+@AllArgsConstructor
+@Getter
+public class CountedLoop {
+    // The induction variable as the condition reads it
+    private final VariableExpr variable;
+    private final Token op;
+    // A literal or a variable, read again before each iteration
+    private final Expr bound;
+    private final double step;
+    // The body without the statement stepping the variable
+    private final List<Stmt> body;
+    // Whether the body mentions the variable at all, so that it has to be stored on every step
+    private final boolean read;
+}
@@ -1,18 +1,22 @@
 package com.bifffly.canterbury.parser.stmt;
 
 import com.bifffly.canterbury.tokens.Token;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import java.util.List;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class ImportStmt implements Stmt {
-    private Token module;
-    private List<Token> imports;
+    private final Token module;
+    private final List<Token> imports;
+    // Set by the resolver; the slot of each import, or null when imported into globals
+    @Setter
+    private int[] slots;
 
     @Override
     public <T> Object accept(StmtVisitor<T> stmtVisitor) {
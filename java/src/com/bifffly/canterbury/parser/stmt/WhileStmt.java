@@ -1,16 +1,21 @@
 package com.bifffly.canterbury.parser.stmt;
 
 import com.bifffly.canterbury.parser.expr.Expr;
-import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
-@AllArgsConstructor
+@RequiredArgsConstructor
 @EqualsAndHashCode
 @Getter
 public class WhileStmt implements Stmt {
-    private Expr condition;
-    private Stmt body;
+    private final Expr condition;
+    private final Stmt body;
+    // Set by the resolver when the loop can run with its counter kept unboxed
+    @Setter
+    @EqualsAndHashCode.Exclude
+    private CountedLoop counted;
 
     @Override
     public <T> Object accept(StmtVisitor<T> stmtVisitor) {
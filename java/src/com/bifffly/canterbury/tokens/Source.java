@@ -0,0 +1,186 @@
+package com.bifffly.canterbury.tokens;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Source text for the tokenizer. Files are memory-mapped and decoded a chunk at a time as the
+// tokenizer reaches them, so the raw bytes never have to be copied onto the heap. Indexes are
+// into the whole text, but only a window of it is kept decoded: text before the point passed to
+// release is dropped the next time the window needs room.
+public class Source implements CharSequence {
+    private static final int CHUNK = 1 << 16;
+
+    private final ByteBuffer bytes;
+    private final CharsetDecoder decoder;
+    private char[] chars;
+    // Index of chars[0] within the text
+    private int base = 0;
+    // Text before this index may be dropped
+    private int released = 0;
+    private int length;
+    private boolean decoded;
+
+    private Source(char[] chars) {
+        this.bytes = null;
+        this.decoder = null;
+        this.chars = chars;
+        this.length = chars.length;
+        this.decoded = true;
+    }
+
+    private Source(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[Math.min(CHUNK, bytes.remaining() + 2)];
+        this.length = 0;
+        this.decoded = false;
+    }
+
+    public static Source of(String src) {
+        return new Source(src.toCharArray());
+    }
+
+    public static Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new Source(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Upper bound on the length, known without decoding anything
+    public long sizeHint() {
+        return bytes == null ? length : bytes.limit();
+    }
+
+    // The mapped bytes of a file, or null for text given as a string
+    public ByteBuffer bytes() {
+        return bytes == null ? null : bytes.duplicate().position(0);
+    }
+
+    // A source of its own over bytes [from, to) of a file, decoded independently of this one
+    public Source slice(int from, int to) {
+        return new Source(bytes.slice(from, to - from));
+    }
+
+    // Promises that nothing before index will be read again
+    public void release(int index) {
+        released = Math.max(released, index);
+    }
+
+    // Whether there is a character at index, decoding up to it if needed
+    public boolean has(int index) {
+        while (index >= length && !decoded) {
+            decode();
+        }
+        return index < length;
+    }
+
+    private void decode() {
+        if (chars.length - (length - base) < 2 && released > base) {
+            System.arraycopy(chars, released - base, chars, 0, length - released);
+            base = released;
+        }
+        if (chars.length - (length - base) < 2) {
+            chars = Arrays.copyOf(chars, Math.max(CHUNK, chars.length * 2));
+        }
+        int end = length - base;
+        CharBuffer out = CharBuffer.wrap(chars, end, Math.min(CHUNK, chars.length - end));
+        CoderResult result = decoder.decode(bytes, out, true);
+        if (result.isUnderflow()) {
+            decoder.flush(out);
+            decoded = true;
+        }
+        length = base + out.position();
+    }
+
+    // The scans below let the tokenizer skip comments, whitespace and string bodies in tight loops
+    // over the decoded text rather than one charAt at a time
+
+    // Index of the first c at or after from, or the end of the source
+    public int indexOf(char c, int from) {
+        int i = from;
+        while (has(i)) {
+            char[] chars = this.chars;
+            int base = this.base;
+            int end = length;
+            while (i < end && chars[i - base] != c) {
+                i++;
+            }
+            if (i < end) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    // Index of the first non-whitespace character at or after from, or the end of the source
+    public int skipWhitespace(int from) {
+        int i = from;
+        while (has(i)) {
+            char[] chars = this.chars;
+            int base = this.base;
+            int end = length;
+            while (i < end && isWhitespace(chars[i - base])) {
+                i++;
+            }
+            if (i < end) {
+                return i;
+            }
+        }
+        return i;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+
+    // Newlines between from and to, which must already have been scanned
+    public int countLines(int from, int to) {
+        int lines = 0;
+        for (int i = from - base; i < to - base; i++) {
+            if (chars[i] == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    public String substring(int start, int end) {
+        has(end - 1);
+        return new String(chars, start - base, end - start);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (!has(index)) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return chars[index - base];
+    }
+
+    @Override
+    public int length() {
+        has(Integer.MAX_VALUE);
+        return length;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+}
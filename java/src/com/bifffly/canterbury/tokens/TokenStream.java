@@ -0,0 +1,133 @@
+package com.bifffly.canterbury.tokens;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.bifffly.canterbury.tokens.TokenType.*;
+
+// Tokens as parallel arrays of offsets into the source. Lexemes, literal values and Token objects
+// are only created when the parser asks for them.
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+    // How many of the most recent tokens a pulled stream keeps around for the parser to look at
+    private static final int LOOKAHEAD = 8;
+
+    private final Source src;
+    // Set when tokens are pulled on demand, in which case the arrays are a ring buffer
+    private final Tokenizer tokenizer;
+    private int[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int mask;
+    private int size = 0;
+
+    TokenStream(Source src) {
+        this(src, null, 256);
+    }
+
+    TokenStream(Source src, Tokenizer tokenizer) {
+        this(src, tokenizer, LOOKAHEAD);
+    }
+
+    private TokenStream(Source src, Tokenizer tokenizer, int capacity) {
+        this.src = src;
+        this.tokenizer = tokenizer;
+        this.types = new int[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new int[capacity];
+        this.lines = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        if (tokenizer == null && size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            lines = Arrays.copyOf(lines, size * 2);
+            mask = types.length - 1;
+        }
+        int i = size & mask;
+        types[i] = type.ordinal();
+        starts[i] = start;
+        lengths[i] = length;
+        lines[i] = line;
+        size++;
+        if (tokenizer != null && size > mask) {
+            // The oldest token the ring still holds is the furthest back the parser can look
+            src.release(starts[size & mask]);
+        }
+    }
+
+    // Position of token i in the arrays, tokenizing up to it first if it hasn't been read yet
+    private int index(int i) {
+        while (i >= size && tokenizer != null) {
+            if (!tokenizer.scan()) {
+                break;
+            }
+        }
+        if (i < oldest()) {
+            throw new IllegalStateException("Token " + i + " was dropped, the oldest held is " + oldest() + ".");
+        }
+        return i & mask;
+    }
+
+    // The lowest index still held; a pulled stream overwrites older tokens as it reads new ones
+    private int oldest() {
+        return tokenizer == null ? 0 : Math.max(0, size - types.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int i) {
+        return TYPES[types[index(i)]];
+    }
+
+    public int line(int i) {
+        return lines[index(i)];
+    }
+
+    public String lexeme(int i) {
+        int j = index(i);
+        return src.substring(starts[j], starts[j] + lengths[j]);
+    }
+
+    public Object value(int i) {
+        int j = index(i);
+        switch (TYPES[types[j]]) {
+            case NUM: {
+                String text = lexeme(i);
+                if (text.startsWith("0b")) {
+                    return (double) Integer.parseInt(text.substring(2), 2);
+                }
+                if (text.startsWith("0x")) {
+                    return (double) Integer.parseInt(text.substring(2), 16);
+                }
+                return Double.parseDouble(text);
+            }
+            case STR: return src.substring(starts[j] + 1, starts[j] + lengths[j] - 1);
+            case EOF: return null;
+            default: {
+                // Identifiers and keywords carry their text; punctuation carries nothing
+                char c = src.charAt(starts[j]);
+                return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') ? lexeme(i) : null;
+            }
+        }
+    }
+
+    public Token token(int i) {
+        return new Token(type(i), lexeme(i), value(i), line(i));
+    }
+
+    public List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            tokens.add(token(i));
+        }
+        return tokens;
+    }
+}
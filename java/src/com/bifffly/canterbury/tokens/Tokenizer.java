@@ -1,8 +1,8 @@
 package com.bifffly.canterbury.tokens;
 
-import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.ErrorReporter;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +11,8 @@ import static com.bifffly.canterbury.tokens.TokenType.*;
 
 public class Tokenizer  {
     private final static Map<String, TokenType> KEYWORDS = new HashMap<>();
+    // Keywords grouped by first letter, so they can be matched without building an identifier's text
+    private final static String[][] KEYWORDS_BY_LETTER = new String[26][0];
 
     static {
         KEYWORDS.put("and", AND);
@@ -32,26 +34,45 @@ public class Tokenizer  {
         KEYWORDS.put("null", NULL);
         KEYWORDS.put("import", IMPORT);
         KEYWORDS.put("return", RETURN);
+
+        for (String keyword : KEYWORDS.keySet()) {
+            int letter = keyword.charAt(0) - 'a';
+            String[] keywords = Arrays.copyOf(KEYWORDS_BY_LETTER[letter], KEYWORDS_BY_LETTER[letter].length + 1);
+            keywords[keywords.length - 1] = keyword;
+            KEYWORDS_BY_LETTER[letter] = keywords;
+        }
     }
 
-    private final String src;
-    private List<Token> tokens;
+    private final Source src;
+    private final ErrorReporter errors;
+    // Index just past the part of the source this tokenizer reads
+    private final int end;
+    private TokenStream tokens;
+    private boolean finished = false;
     private int start = 0;
     private int curr = 0;
     private int line = 1;
 
     public Tokenizer(String src) {
-        this.src = src;
-        this.tokens = new ArrayList<>();
+        this(Source.of(src), new ErrorReporter());
     }
 
-    private void addToken(TokenType type) {
-        addToken(type, null);
+    public Tokenizer(Source src, ErrorReporter errors) {
+        this(src, errors, 0, Integer.MAX_VALUE, 1);
     }
 
-    private void addToken(TokenType type, Object value) {
-        String text = src.substring(start, curr);
-        tokens.add(new Token(type, text, value, line));
+    public Tokenizer(Source src, ErrorReporter errors, int from, int to, int line) {
+        this.src = src;
+        this.errors = errors;
+        this.end = to;
+        this.start = from;
+        this.curr = from;
+        this.line = line;
+    }
+
+    // Only the token's position is kept; the stream works out its lexeme and value on request
+    private void addToken(TokenType type) {
+        tokens.add(type, start, curr - start, line);
     }
 
     private char advance() {
@@ -63,7 +84,7 @@ public class Tokenizer  {
     }
 
     private char peekNext() {
-        return (curr + 1 < src.length()) ? src.charAt(curr + 1) : '\0';
+        return curr + 1 < end && src.has(curr + 1) ? src.charAt(curr + 1) : '\0';
     }
 
     private boolean match(char expected) {
@@ -99,36 +120,34 @@ public class Tokenizer  {
     }
 
     private void string(char delim) {
-        while (hasNext() && peek() != delim) {
-            if (peek() == '\n') line++;
-            advance();
-        }
+        int close = Math.min(src.indexOf(delim, curr), end);
+        line += src.countLines(curr, close);
+        curr = close;
 
         if (!hasNext()) {
-            Canterbury.error(line, "Unterminated string.");
+            errors.error(line, "Unterminated string.");
             return;
         }
 
         advance();
 
-        String value = src.substring(start + 1, curr - 1);
-        addToken(STR, value);
+        addToken(STR);
     }
 
     private void binary() {
-        int numStart = ++curr;
+        curr++;
         while (isBinary(peek())) {
             advance();
         }
-        addToken(NUM, (double) Integer.parseInt(src.substring(numStart, curr), 2));
+        addToken(NUM);
     }
 
     private void hex() {
-        int numStart = ++curr;
+        curr++;
         while (isHex(peek())) {
             advance();
         }
-        addToken(NUM, (double) Integer.parseInt(src.substring(numStart, curr), 16));
+        addToken(NUM);
     }
 
     private void number() {
@@ -151,12 +170,12 @@ public class Tokenizer  {
                     advance();
                 }
             } else {
-                Canterbury.error(line, "Unexpected character.");
+                errors.error(line, "Unexpected character.");
                 return;
             }
         }
 
-        addToken(NUM, Double.parseDouble(src.substring(start, curr)));
+        addToken(NUM);
     }
 
     private void identifier() {
@@ -164,13 +183,33 @@ public class Tokenizer  {
             advance();
         }
 
-        String text = src.substring(start, curr);
-        TokenType type = KEYWORDS.getOrDefault(text, IDENTIFIER);
-        addToken(type, text);
+        addToken(keyword());
+    }
+
+    private TokenType keyword() {
+        char c = src.charAt(start);
+        if (c < 'a' || c > 'z') {
+            return IDENTIFIER;
+        }
+        for (String keyword : KEYWORDS_BY_LETTER[c - 'a']) {
+            if (keyword.length() == curr - start && matches(keyword)) {
+                return KEYWORDS.get(keyword);
+            }
+        }
+        return IDENTIFIER;
+    }
+
+    private boolean matches(String keyword) {
+        for (int i = 1; i < keyword.length(); i++) {
+            if (src.charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public boolean hasNext() {
-        return curr < src.length();
+        return curr < end && src.has(curr);
     }
 
     public void next() {
@@ -198,16 +237,16 @@ public class Tokenizer  {
             case ':': addToken(match('=') ? WALRUS : COLON); break;
             case '<': addToken(match('=') ? LESSER_EQUAL : match('>') ? UNEQUAL : LESSER); break;
             case '>': addToken(match('=') ? GREATER_EQUAL : GREATER); break;
-            case '#': {
-                while (peek() != '\n' && hasNext()) {
-                    advance();
-                }
-                break;
-            }
+            case '#': curr = Math.min(src.indexOf('\n', curr), end); break;
             case ' ':
             case '\r':
-            case '\t': break;
-            case '\n': line++; break;
+            case '\t':
+            case '\n': {
+                int next = Math.min(src.skipWhitespace(curr), end);
+                line += src.countLines(curr - 1, next);
+                curr = next;
+                break;
+            }
             case '"':
             case '\'': string(c); break;
             default: {
@@ -216,7 +255,7 @@ public class Tokenizer  {
                 } else if (isAlpha(c)) {
                     identifier(); break;
                 } else {
-                    Canterbury.error(line, "Unexpected character.");
+                    errors.error(line, "Unexpected character.");
                 }
                 break;
             }
@@ -224,13 +263,42 @@ public class Tokenizer  {
     }
 
     public List<Token> tokenize() {
+        return stream().toList();
+    }
+
+    // Tokenizes the whole source up front
+    public TokenStream stream() {
+        tokens = new TokenStream(src);
+        boolean scanned = true;
+        while (scanned) {
+            scanned = scan();
+        }
+        return tokens;
+    }
+
+    // A stream that tokenizes as it is read, so the parser can start before the source is scanned
+    public TokenStream pull() {
+        tokens = new TokenStream(src, this);
+        return tokens;
+    }
+
+    // Adds the next token to the stream, or EOF at the end of the source; false once EOF is added
+    boolean scan() {
+        if (finished) {
+            return false;
+        }
+        int size = tokens.size();
         while (hasNext()) {
             // We are at the beginning of the next lexeme.
             start = curr;
             next();
+            if (tokens.size() > size) {
+                return true;
+            }
         }
-
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
+        start = curr;
+        addToken(EOF);
+        finished = true;
+        return true;
     }
 }
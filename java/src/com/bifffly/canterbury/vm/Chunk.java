@@ -0,0 +1,64 @@
+package com.bifffly.canterbury.vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Chunk {
+    private byte[] code = new byte[64];
+    private int[] lines = new int[64];
+    private int count = 0;
+    private final List<Object> constants = new ArrayList<>();
+    // Numbers and strings are interned so repeated literals share a constant
+    private final Map<Object, Integer> interned = new HashMap<>();
+
+    public int count() {
+        return count;
+    }
+
+    public void write(int b, int line) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            lines = Arrays.copyOf(lines, count * 2);
+        }
+        code[count] = (byte) b;
+        lines[count] = line;
+        count++;
+    }
+
+    public void writeShort(int value, int line) {
+        write((value >> 8) & 0xff, line);
+        write(value & 0xff, line);
+    }
+
+    public void patchShort(int offset, int value) {
+        code[offset] = (byte) ((value >> 8) & 0xff);
+        code[offset + 1] = (byte) (value & 0xff);
+    }
+
+    public int addConstant(Object value) {
+        if (value instanceof Double || value instanceof String) {
+            Integer index = interned.get(value);
+            if (index != null) {
+                return index;
+            }
+            interned.put(value, constants.size());
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    public byte[] getCode() {
+        return Arrays.copyOf(code, count);
+    }
+
+    public int[] getLines() {
+        return Arrays.copyOf(lines, count);
+    }
+
+    public Object[] getConstants() {
+        return constants.toArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.bifffly.canterbury.vm;
+
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.object.Bindable;
+import com.bifffly.canterbury.object.Callable;
+import com.bifffly.canterbury.object.Instance;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.tokens.Token;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@AllArgsConstructor
+@Getter
+public class Closure implements Callable, Bindable {
+    private final VM vm;
+    private final Prototype prototype;
+    private final Cell[] upvalues;
+
+    @Override
+    public FuncExpr getExpr() {
+        return prototype.getExpr();
+    }
+
+    @Override
+    public boolean isUnbound() {
+        return prototype.getExpr().isMethod() && upvalues == null;
+    }
+
+    @Override
+    public Closure bind(Instance instance) {
+        return new Closure(vm, prototype, instance.capture(prototype.getExpr().getCaptures()));
+    }
+
+    @Override
+    public int arity() {
+        return prototype.getArity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> args) {
+        return vm.call(this, args.toArray());
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, Object[] args) {
+        return vm.call(this, args);
+    }
+
+    @Override
+    public String toString() {
+        return "<func " + prototype.getExpr().getParams().stream().map(Token::getLexeme).toList() + ">";
+    }
+}
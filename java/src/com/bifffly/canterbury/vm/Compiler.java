@@ -0,0 +1,463 @@
+package com.bifffly.canterbury.vm;
+
+import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.object.InlineCache;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.BinaryExpr;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.expr.CaseExpr;
+import com.bifffly.canterbury.parser.expr.Expr;
+import com.bifffly.canterbury.parser.expr.ExprVisitor;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.expr.GetExpr;
+import com.bifffly.canterbury.parser.expr.GroupingExpr;
+import com.bifffly.canterbury.parser.expr.LiteralExpr;
+import com.bifffly.canterbury.parser.expr.LogicalExpr;
+import com.bifffly.canterbury.parser.expr.MatchExpr;
+import com.bifffly.canterbury.parser.expr.MatchTable;
+import com.bifffly.canterbury.parser.expr.SelfExpr;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.UnaryExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.parser.stmt.BlockStmt;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.IfStmt;
+import com.bifffly.canterbury.parser.stmt.ImportStmt;
+import com.bifffly.canterbury.parser.stmt.ReturnStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.parser.stmt.StmtVisitor;
+import com.bifffly.canterbury.parser.stmt.WhileStmt;
+import com.bifffly.canterbury.tokens.Token;
+
+import java.util.List;
+
+import static com.bifffly.canterbury.vm.OpCode.*;
+
+/**
+ * Compiles a resolved AST into bytecode. Local accesses use the (depth, slot) pairs assigned by
+ * the resolver, so the VM shares the interpreter's environment layout and scoping rules.
+ * Statements leave the stack as they found it; expressions push exactly one value.
+ */
+public class Compiler implements ExprVisitor<Void>, StmtVisitor<Void> {
+    private static final int MAX_SHORT = 0xffff;
+    // Argument counts are written as a single unsigned byte
+    private static final int MAX_ARGS = 0xff;
+
+    private Chunk chunk = new Chunk();
+    private int line = 1;
+
+    public Prototype compile(List<Stmt> stmts) {
+        for (Stmt stmt : stmts) {
+            compileStmt(stmt);
+        }
+        emit(OP_NULL);
+        emit(OP_RET);
+        return new Prototype(null, 0, 0, chunk);
+    }
+
+    private void compileStmt(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void compileExpr(Expr expr) {
+        expr.accept(this);
+    }
+
+    private void at(Token token) {
+        line = token.getLine();
+    }
+
+    private void emit(byte op) {
+        chunk.write(op, line);
+    }
+
+    private void emit(byte op, int operand) {
+        chunk.write(op, line);
+        chunk.writeShort(operand, line);
+    }
+
+    private void emit(byte op, int first, int second) {
+        chunk.write(op, line);
+        chunk.writeShort(first, line);
+        chunk.writeShort(second, line);
+    }
+
+    private int constant(Object value) {
+        int index = chunk.addConstant(value);
+        if (index > MAX_SHORT) {
+            Canterbury.error(line, "Too many constants in one chunk.");
+            return 0;
+        }
+        return index;
+    }
+
+    private int emitJump(byte op) {
+        emit(op, MAX_SHORT);
+        return chunk.count() - 2;
+    }
+
+    private void patchJump(int offset) {
+        int jump = chunk.count() - offset - 2;
+        if (jump > MAX_SHORT) {
+            Canterbury.error(line, "Too much code to jump over.");
+        }
+        chunk.patchShort(offset, jump);
+    }
+
+    private void emitLoop(int start) {
+        int offset = chunk.count() - start + 3;
+        if (offset > MAX_SHORT) {
+            Canterbury.error(line, "Loop body too large.");
+        }
+        emit(OP_LOOP, offset);
+    }
+
+    private void emitSet(VariableExpr varExpr) {
+        if (varExpr.getDepth() < 0) {
+            emit(OP_SET_GLOBAL, constant(varExpr.getIdentifier().getLexeme()));
+        } else {
+            emit(OP_SET_LOCAL, varExpr.getDepth(), varExpr.getSlot());
+        }
+    }
+
+    private Prototype function(FuncExpr expr) {
+        Chunk enclosing = chunk;
+        chunk = new Chunk();
+        for (Stmt stmt : expr.getBody().getStatements()) {
+            compileStmt(stmt);
+        }
+        emit(OP_NULL);
+        emit(OP_RET);
+        Prototype prototype = new Prototype(expr, expr.getParams().size(), expr.getSlots(), chunk);
+        chunk = enclosing;
+        return prototype;
+    }
+
+    @Override
+    public Void visitAssignmentExpr(AssignmentExpr expr) {
+        compileExpr(expr.getValue());
+        if (expr.getTarget() instanceof VariableExpr varExpr) {
+            at(varExpr.getIdentifier());
+            emitSet(varExpr);
+        } else if (expr.getTarget() instanceof GetExpr get && get.getExpr() instanceof SelfExpr self) {
+            compileExpr(self);
+            emit(OP_SET_PROP, constant(get.getIdentifier()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(BinaryExpr expr) {
+        compileExpr(expr.getLeft());
+        compileExpr(expr.getRight());
+        at(expr.getOp());
+        switch (expr.getOp().getType()) {
+            case BIT_OR: emit(OP_BIT_OR); break;
+            case BIT_AND: emit(OP_BIT_AND); break;
+            case PLUS: emit(OP_ADD); break;
+            case MINUS: emit(OP_SUB); break;
+            case SLASH: emit(OP_DIV); break;
+            case STAR: emit(OP_MUL); break;
+            case LESSER: emit(OP_LESSER); break;
+            case LESSER_EQUAL: emit(OP_LESSER_EQ); break;
+            case GREATER: emit(OP_GREATER); break;
+            case GREATER_EQUAL: emit(OP_GREATER_EQ); break;
+            case EQUAL: emit(OP_EQ); break;
+            case UNEQUAL: emit(OP_UNEQ); break;
+            case IS: emit(OP_IS); break;
+            default: {
+                emit(OP_POP);
+                emit(OP_POP);
+                emit(OP_NULL);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(CallExpr expr) {
+        GetExpr get = expr.getCallee() instanceof GetExpr getExpr ? getExpr : null;
+        compileExpr(get != null ? get.getExpr() : expr.getCallee());
+        for (Expr arg : expr.getArgs()) {
+            compileExpr(arg);
+        }
+        at(expr.getBracket());
+        if (expr.getArgs().size() > MAX_ARGS) {
+            Canterbury.error(expr.getBracket(), "Cannot have more than " + MAX_ARGS + " arguments.");
+        }
+        if (get != null) {
+            emit(OP_INVOKE, constant(get.getCache()));
+        } else {
+            emit(OP_CALL);
+        }
+        chunk.write(expr.getArgs().size(), line);
+        return null;
+    }
+
+    @Override
+    public Void visitCaseExpr(CaseExpr expr) {
+        compileExpr(expr.getThen());
+        return null;
+    }
+
+    @Override
+    public Void visitFuncExpr(FuncExpr expr) {
+        at(expr.getDecl());
+        emit(OP_CLOSURE, constant(function(expr)));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(GetExpr expr) {
+        compileExpr(expr.getExpr());
+        at(expr.getIdentifier());
+        emit(OP_GET_PROP, constant(expr.getCache()));
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(GroupingExpr expr) {
+        compileExpr(expr.getExpr());
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(LiteralExpr expr) {
+        Object value = expr.getValue();
+        if (value == null) {
+            emit(OP_NULL);
+        } else if (Boolean.TRUE.equals(value)) {
+            emit(OP_TRUE);
+        } else if (Boolean.FALSE.equals(value)) {
+            emit(OP_FALSE);
+        } else {
+            emit(OP_CONST, constant(value));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(LogicalExpr expr) {
+        compileExpr(expr.getLeft());
+        compileExpr(expr.getRight());
+        at(expr.getOp());
+        switch (expr.getOp().getType()) {
+            case OR: emit(OP_OR); break;
+            case AND: emit(OP_AND); break;
+            default: {
+                emit(OP_POP);
+                emit(OP_POP);
+                emit(OP_NULL);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitMatchExpr(MatchExpr expr) {
+        // A top-level match keeps the '_' it shadows on the stack under its own
+        boolean global = expr.getSlot() < 0;
+        if (global) {
+            emit(OP_GET_MATCHED);
+        }
+        compileExpr(expr.getExpr());
+        at(expr.getToken());
+        if (global) {
+            emit(OP_SET_MATCHED);
+        } else {
+            emit(OP_SET_LOCAL, 0, expr.getSlot());
+        }
+
+        // The matched value stays on the stack while the cases are tested
+        List<CaseExpr> cases = expr.getCases();
+        int[] exits = new int[cases.size()];
+        int i = 0;
+        while (i < cases.size()) {
+            MatchTable table = expr.getTables()[i];
+            if (table != null) {
+                compileTable(table, cases, exits);
+                i = table.getEnd();
+                continue;
+            }
+            compileExpr(cases.get(i).getCondition());
+            emit(OP_CASE);
+            int next = emitJump(OP_JUMP_FALSE);
+            emit(OP_POP);
+            compileExpr(cases.get(i));
+            exits[i] = emitJump(OP_JUMP);
+            patchJump(next);
+            i++;
+        }
+        emit(OP_POP);
+        emit(OP_NULL);
+        for (int exit : exits) {
+            patchJump(exit);
+        }
+        if (global) {
+            emit(OP_END_MATCH);
+        }
+        return null;
+    }
+
+    // Emits a jump table with an offset to each case of the run, followed by one for a miss
+    private void compileTable(MatchTable table, List<CaseExpr> cases, int[] exits) {
+        emit(OP_DISPATCH, constant(table));
+        int jumps = chunk.count();
+        for (int i = 0; i <= table.size(); i++) {
+            chunk.writeShort(MAX_SHORT, line);
+        }
+        int base = chunk.count();
+        for (int i = 0; i < table.size(); i++) {
+            chunk.patchShort(jumps + 2 * i, chunk.count() - base);
+            emit(OP_POP);
+            compileExpr(cases.get(table.getStart() + i));
+            exits[table.getStart() + i] = emitJump(OP_JUMP);
+        }
+        if (chunk.count() - base > MAX_SHORT) {
+            Canterbury.error(line, "Too much code to jump over.");
+        }
+        chunk.patchShort(jumps + 2 * table.size(), chunk.count() - base);
+    }
+
+    @Override
+    public Void visitSelfExpr(SelfExpr expr) {
+        at(expr.getSelf());
+        if (expr.getDepth() >= 0) {
+            emit(OP_GET_LOCAL, expr.getDepth(), expr.getSlot());
+        } else if (expr.getUpvalue() >= 0) {
+            emit(OP_GET_UPVALUE, expr.getUpvalue());
+        } else {
+            emit(OP_GET_GLOBAL, constant(expr.getSelf()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStructExpr(StructExpr expr) {
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            if (!(assignmentExpr.getTarget() instanceof VariableExpr)) {
+                continue;
+            }
+            // Methods capture their variables when bound to an instance
+            if (assignmentExpr.getValue() instanceof FuncExpr func) {
+                at(func.getDecl());
+                emit(OP_METHOD, constant(function(func)));
+            } else {
+                compileExpr(assignmentExpr.getValue());
+            }
+        }
+        at(expr.getDecl());
+        emit(OP_STRUCT, constant(expr));
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(UnaryExpr expr) {
+        compileExpr(expr.getExpr());
+        at(expr.getOp());
+        switch (expr.getOp().getType()) {
+            case BANG: emit(OP_NOT); break;
+            case MINUS: emit(OP_NEG); break;
+            case BIT_NEG: emit(OP_BIT_NEG); break;
+            default: {
+                emit(OP_POP);
+                emit(OP_NULL);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(VariableExpr expr) {
+        at(expr.getIdentifier());
+        if (expr.getDepth() >= 0) {
+            emit(OP_GET_LOCAL, expr.getDepth(), expr.getSlot());
+        } else if (expr.getUpvalue() >= 0) {
+            emit(OP_GET_UPVALUE, expr.getUpvalue());
+        } else if (expr.isMatched()) {
+            emit(OP_GET_MATCHED);
+        } else {
+            emit(OP_GET_GLOBAL, constant(expr.getIdentifier()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(BlockStmt stmt) {
+        if (stmt.isScoped()) {
+            emit(OP_PUSH_SCOPE, stmt.getSlots());
+        }
+        for (Stmt statement : stmt.getStatements()) {
+            compileStmt(statement);
+        }
+        if (stmt.isScoped()) {
+            emit(OP_POP_SCOPE);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(ExpressionStmt stmt) {
+        compileExpr(stmt.getExpr());
+        emit(OP_POP);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(IfStmt stmt) {
+        compileExpr(stmt.getCondition());
+        int elseJump = emitJump(OP_JUMP_FALSE);
+        compileStmt(stmt.getThenBranch());
+        if (stmt.getElseBranch() == null) {
+            patchJump(elseJump);
+            return null;
+        }
+        int endJump = emitJump(OP_JUMP);
+        patchJump(elseJump);
+        compileStmt(stmt.getElseBranch());
+        patchJump(endJump);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(ImportStmt stmt) {
+        at(stmt.getModule());
+        emit(OP_GET_GLOBAL, constant(stmt.getModule()));
+        List<Token> imports = stmt.getImports();
+        for (int i = 0; i < imports.size(); i++) {
+            emit(OP_DUP);
+            emit(OP_GET_PROP, constant(new InlineCache(imports.get(i))));
+            if (stmt.getSlots() == null) {
+                emit(OP_SET_GLOBAL, constant(imports.get(i).getLexeme()));
+            } else {
+                emit(OP_SET_LOCAL, 0, stmt.getSlots()[i]);
+            }
+            emit(OP_POP);
+        }
+        emit(OP_POP);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(ReturnStmt stmt) {
+        if (stmt.getValue() != null) {
+            compileExpr(stmt.getValue());
+        } else {
+            emit(OP_NULL);
+        }
+        at(stmt.getToken());
+        emit(OP_RET);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(WhileStmt stmt) {
+        int start = chunk.count();
+        compileExpr(stmt.getCondition());
+        int exit = emitJump(OP_JUMP_FALSE);
+        compileStmt(stmt.getBody());
+        emitLoop(start);
+        patchJump(exit);
+        return null;
+    }
+}
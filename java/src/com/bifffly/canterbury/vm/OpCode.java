@@ -0,0 +1,54 @@
+package com.bifffly.canterbury.vm;
+
+// Instruction set of the bytecode VM; operands follow the opcode as big-endian shorts unless noted
+public final class OpCode {
+    public static final byte OP_CONST = 0;         // const
+    public static final byte OP_POP = 1;
+    public static final byte OP_DUP = 2;
+    public static final byte OP_SET_GLOBAL = 3;    // const name
+    public static final byte OP_GET_GLOBAL = 4;    // const token
+    public static final byte OP_SET_LOCAL = 5;     // depth, slot
+    public static final byte OP_GET_LOCAL = 6;     // depth, slot
+    public static final byte OP_JUMP_FALSE = 7;    // offset
+    public static final byte OP_JUMP = 8;          // offset
+    public static final byte OP_LOOP = 9;          // offset
+    public static final byte OP_NULL = 10;
+    public static final byte OP_TRUE = 11;
+    public static final byte OP_FALSE = 12;
+    public static final byte OP_ADD = 13;
+    public static final byte OP_SUB = 14;
+    public static final byte OP_MUL = 15;
+    public static final byte OP_DIV = 16;
+    public static final byte OP_BIT_AND = 17;
+    public static final byte OP_BIT_OR = 18;
+    public static final byte OP_NEG = 19;
+    public static final byte OP_NOT = 20;
+    public static final byte OP_BIT_NEG = 21;
+    public static final byte OP_EQ = 22;
+    public static final byte OP_UNEQ = 23;
+    public static final byte OP_IS = 24;
+    public static final byte OP_GREATER = 25;
+    public static final byte OP_GREATER_EQ = 26;
+    public static final byte OP_LESSER = 27;
+    public static final byte OP_LESSER_EQ = 28;
+    public static final byte OP_AND = 29;
+    public static final byte OP_OR = 30;
+    public static final byte OP_CASE = 31;
+    public static final byte OP_GET_PROP = 32;     // const inline cache
+    public static final byte OP_SET_PROP = 33;     // const token
+    public static final byte OP_CLOSURE = 34;      // const prototype
+    public static final byte OP_STRUCT = 35;       // const struct expr
+    public static final byte OP_CALL = 36;         // byte argc
+    public static final byte OP_PUSH_SCOPE = 37;   // slots
+    public static final byte OP_POP_SCOPE = 38;
+    public static final byte OP_RET = 39;
+    public static final byte OP_GET_UPVALUE = 40;  // upvalue
+    public static final byte OP_METHOD = 41;       // const prototype
+    public static final byte OP_INVOKE = 42;       // const inline cache, byte argc
+    public static final byte OP_GET_MATCHED = 43;
+    public static final byte OP_SET_MATCHED = 44;
+    public static final byte OP_END_MATCH = 45;
+    public static final byte OP_DISPATCH = 46;     // const match table, offset per case, miss offset
+
+    private OpCode() {}
+}
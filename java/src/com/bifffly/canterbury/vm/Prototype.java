@@ -0,0 +1,24 @@
+package com.bifffly.canterbury.vm;
+
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import lombok.Getter;
+
+// A compiled function body, shared by every closure created from the same FuncExpr
+@Getter
+public class Prototype {
+    private final FuncExpr expr;
+    private final int arity;
+    private final int slots;
+    private final byte[] code;
+    private final int[] lines;
+    private final Object[] constants;
+
+    public Prototype(FuncExpr expr, int arity, int slots, Chunk chunk) {
+        this.expr = expr;
+        this.arity = arity;
+        this.slots = slots;
+        this.code = chunk.getCode();
+        this.lines = chunk.getLines();
+        this.constants = chunk.getConstants();
+    }
+}
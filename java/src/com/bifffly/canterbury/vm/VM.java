@@ -0,0 +1,448 @@
+package com.bifffly.canterbury.vm;
+
+import com.bifffly.canterbury.Canterbury;
+import com.bifffly.canterbury.interpreter.Cell;
+import com.bifffly.canterbury.interpreter.Environment;
+import com.bifffly.canterbury.interpreter.RuntimeError;
+import com.bifffly.canterbury.modules.Module;
+import com.bifffly.canterbury.modules.StandardLibrary;
+import com.bifffly.canterbury.object.Callable;
+import com.bifffly.canterbury.object.InlineCache;
+import com.bifffly.canterbury.object.Instance;
+import com.bifffly.canterbury.object.Struct;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.MatchTable;
+import com.bifffly.canterbury.parser.expr.StructExpr;
+import com.bifffly.canterbury.parser.expr.VariableExpr;
+import com.bifffly.canterbury.tokens.Token;
+import com.bifffly.canterbury.tokens.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.bifffly.canterbury.interpreter.Interpreter.bool;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkIntOperand;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkIntOperands;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkNumberOperand;
+import static com.bifffly.canterbury.interpreter.Interpreter.checkNumberOperands;
+import static com.bifffly.canterbury.interpreter.Interpreter.isEqual;
+import static com.bifffly.canterbury.interpreter.Interpreter.isIdentical;
+import static com.bifffly.canterbury.interpreter.Interpreter.matches;
+import static com.bifffly.canterbury.vm.OpCode.*;
+
+public class VM {
+    private static class CallFrame {
+        private Prototype prototype;
+        private int ip;
+        private int stackBase;
+        private Environment env;
+        private Cell[] upvalues;
+    }
+
+    private final Environment globals = new Environment();
+    private Object[] stack = new Object[256];
+    private int top = 0;
+    private CallFrame[] frames = new CallFrame[64];
+    private int frameCount = 0;
+    // The value of '_' inside a top-level match
+    private Object matched;
+
+    public VM() {
+        StandardLibrary stdlib = new StandardLibrary(globals);
+        stdlib.getModules().forEach((module) -> globals.define(module.getName(), module));
+    }
+
+    public void interpret(Prototype script) {
+        int base = frameCount;
+        int stackBase = top;
+        try {
+            pushFrame(script, globals, new Cell[0]);
+            run(base);
+            pop();
+        } catch (RuntimeError e) {
+            frameCount = base;
+            top = stackBase;
+            matched = null;
+            Canterbury.runtimeError(e);
+        }
+    }
+
+    Object call(Closure closure, Object[] args) {
+        push(closure);
+        for (Object arg : args) {
+            push(arg);
+        }
+        int base = frameCount;
+        invoke(closure.getPrototype(), closure.getUpvalues(), args.length);
+        run(base);
+        return pop();
+    }
+
+    private void push(Object value) {
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+        stack[top++] = value;
+    }
+
+    private Object pop() {
+        Object value = stack[--top];
+        stack[top] = null;
+        return value;
+    }
+
+    private Object peek(int distance) {
+        return stack[top - 1 - distance];
+    }
+
+    private void pushFrame(Prototype prototype, Environment env, Cell[] upvalues) {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+        }
+        CallFrame frame = frames[frameCount];
+        if (frame == null) {
+            frame = frames[frameCount] = new CallFrame();
+        }
+        frame.prototype = prototype;
+        frame.ip = 0;
+        frame.stackBase = top;
+        frame.env = env;
+        frame.upvalues = upvalues;
+        frameCount++;
+    }
+
+    private void invoke(Prototype prototype, Cell[] upvalues, int argc) {
+        Environment local = new Environment(null, prototype.getSlots());
+        for (int i = argc - 1; i >= 0; i--) {
+            local.define(i, pop());
+        }
+        pop();
+        pushFrame(prototype, local, upvalues);
+    }
+
+    // Methods called straight off an instance run against it without binding a closure first
+    private void invokeProperty(InlineCache cache, int argc, Token bracket) {
+        Object o = peek(argc);
+        if (o instanceof Instance instance && instance.getUnbound(cache) instanceof Closure method
+                && method.isUnbound() && method.getVm() == this) {
+            if (argc != method.arity()) {
+                throw new RuntimeError(bracket, "Expected " + method.arity() + "args, received " + argc + ".");
+            }
+            Prototype prototype = method.getPrototype();
+            invoke(prototype, instance.capture(prototype.getExpr().getCaptures()), argc);
+            return;
+        }
+        stack[top - 1 - argc] = property(o, cache);
+        callValue(argc, bracket);
+    }
+
+    private static Object property(Object o, InlineCache cache) {
+        if (o instanceof Instance instance) {
+            return instance.get(cache);
+        }
+        if (o instanceof Module module) {
+            return module.get(cache.getIdentifier());
+        }
+        throw new RuntimeError(cache.getIdentifier(), "Cannot retrieve property.");
+    }
+
+    private void callValue(int argc, Token bracket) {
+        Object callee = peek(argc);
+        if (!(callee instanceof Callable callable)) {
+            throw new RuntimeError(bracket, "Expected callable object.");
+        }
+        if (argc != callable.arity()) {
+            throw new RuntimeError(bracket, "Expected " + callable.arity() + "args, received " + argc + ".");
+        }
+        if (callable instanceof Closure closure && closure.getVm() == this) {
+            invoke(closure.getPrototype(), closure.getUpvalues(), argc);
+            return;
+        }
+        Object result;
+        try {
+            switch (argc) {
+                case 0: result = callable.call0(null); break;
+                case 1: result = callable.call1(null, peek(0)); break;
+                case 2: result = callable.call2(null, peek(1), peek(0)); break;
+                case 3: result = callable.call3(null, peek(2), peek(1), peek(0)); break;
+                default: result = callable.call(null, Arrays.copyOfRange(stack, top - argc, top)); break;
+            }
+        } catch (RuntimeError e) {
+            throw e.at(bracket);
+        }
+        top -= argc + 1;
+        Arrays.fill(stack, top, top + argc + 1, null);
+        push(result);
+    }
+
+    private Struct struct(StructExpr expr, Environment env, Cell[] upvalues) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        for (AssignmentExpr assignmentExpr : expr.getBody()) {
+            if (assignmentExpr.getTarget() instanceof VariableExpr varExpr) {
+                names.add(varExpr.getIdentifier().getLexeme());
+            }
+        }
+        for (int i = names.size() - 1; i >= 0; i--) {
+            attributes.put(names.get(i), pop());
+        }
+        return new Struct(expr, attributes, env, upvalues);
+    }
+
+    private static Token tokenAt(Prototype prototype, int ip) {
+        return new Token(TokenType.EOF, "", null, prototype.getLines()[ip]);
+    }
+
+    private void run(int base) {
+        CallFrame frame = frames[frameCount - 1];
+        byte[] code = frame.prototype.getCode();
+        Object[] constants = frame.prototype.getConstants();
+        Environment env = frame.env;
+        int ip = frame.ip;
+
+        while (true) {
+            byte op = code[ip++];
+            switch (op) {
+                case OP_CONST: {
+                    push(constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)]);
+                    ip += 2;
+                    break;
+                }
+                case OP_POP: pop(); break;
+                case OP_DUP: push(peek(0)); break;
+                case OP_SET_GLOBAL: {
+                    String name = (String) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    globals.define(name, peek(0));
+                    break;
+                }
+                case OP_GET_GLOBAL: {
+                    Token identifier = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(globals.get(identifier));
+                    break;
+                }
+                case OP_SET_LOCAL: {
+                    int depth = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    int slot = ((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff);
+                    ip += 4;
+                    env.assignAt(depth, slot, peek(0));
+                    break;
+                }
+                case OP_GET_UPVALUE: {
+                    push(frame.upvalues[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)].getValue());
+                    ip += 2;
+                    break;
+                }
+                case OP_GET_LOCAL: {
+                    int depth = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    int slot = ((code[ip + 2] & 0xff) << 8) | (code[ip + 3] & 0xff);
+                    ip += 4;
+                    push(env.getAt(depth, slot));
+                    break;
+                }
+                case OP_JUMP_FALSE: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    if (!bool(pop())) {
+                        ip += offset;
+                    }
+                    break;
+                }
+                case OP_JUMP: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 + offset;
+                    break;
+                }
+                case OP_LOOP: {
+                    int offset = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2 - offset;
+                    break;
+                }
+                case OP_NULL: push(null); break;
+                case OP_TRUE: push(true); break;
+                case OP_FALSE: push(false); break;
+                case OP_ADD:
+                case OP_SUB:
+                case OP_MUL:
+                case OP_DIV:
+                case OP_GREATER:
+                case OP_GREATER_EQ:
+                case OP_LESSER:
+                case OP_LESSER_EQ: {
+                    Object right = pop();
+                    Object left = pop();
+                    checkNumberOperands(tokenAt(frame.prototype, ip - 1), left, right);
+                    double a = (double) left;
+                    double b = (double) right;
+                    switch (op) {
+                        case OP_ADD: push(a + b); break;
+                        case OP_SUB: push(a - b); break;
+                        case OP_MUL: push(a * b); break;
+                        case OP_DIV: push(a / b); break;
+                        case OP_GREATER: push(a > b); break;
+                        case OP_GREATER_EQ: push(a >= b); break;
+                        case OP_LESSER: push(a < b); break;
+                        default: push(a <= b); break;
+                    }
+                    break;
+                }
+                case OP_BIT_AND:
+                case OP_BIT_OR: {
+                    Object right = pop();
+                    Object left = pop();
+                    checkIntOperands(tokenAt(frame.prototype, ip - 1), left, right);
+                    int a = ((Double) left).intValue();
+                    int b = ((Double) right).intValue();
+                    push(op == OP_BIT_AND ? a & b : a | b);
+                    break;
+                }
+                case OP_NEG: {
+                    Object o = pop();
+                    checkNumberOperand(tokenAt(frame.prototype, ip - 1), o);
+                    push(-(double) o);
+                    break;
+                }
+                case OP_NOT: push(!bool(pop())); break;
+                case OP_BIT_NEG: {
+                    Object o = pop();
+                    checkIntOperand(tokenAt(frame.prototype, ip - 1), o);
+                    push(~((Double) o).intValue());
+                    break;
+                }
+                case OP_EQ: {
+                    Object right = pop();
+                    push(isEqual(pop(), right));
+                    break;
+                }
+                case OP_UNEQ: {
+                    Object right = pop();
+                    push(!isEqual(pop(), right));
+                    break;
+                }
+                case OP_IS: {
+                    Object right = pop();
+                    push(isIdentical(pop(), right));
+                    break;
+                }
+                case OP_AND: {
+                    boolean right = bool(pop());
+                    push(bool(pop()) && right);
+                    break;
+                }
+                case OP_OR: {
+                    boolean right = bool(pop());
+                    push(bool(pop()) || right);
+                    break;
+                }
+                case OP_CASE: {
+                    Object compare = pop();
+                    push(matches(peek(0), compare));
+                    break;
+                }
+                case OP_DISPATCH: {
+                    MatchTable table = (MatchTable) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    int index = table.lookup(peek(0));
+                    int jump = ip + 2 * (index < 0 ? table.size() : index);
+                    int offset = ((code[jump] & 0xff) << 8) | (code[jump + 1] & 0xff);
+                    ip += 2 * (table.size() + 1) + offset;
+                    break;
+                }
+                case OP_GET_MATCHED: push(matched); break;
+                case OP_SET_MATCHED: matched = peek(0); break;
+                case OP_END_MATCH: {
+                    Object result = pop();
+                    matched = pop();
+                    push(result);
+                    break;
+                }
+                case OP_GET_PROP: {
+                    InlineCache cache = (InlineCache) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(property(pop(), cache));
+                    break;
+                }
+                case OP_SET_PROP: {
+                    Token identifier = (Token) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    Instance instance = (Instance) pop();
+                    instance.define(identifier, peek(0));
+                    break;
+                }
+                case OP_CLOSURE: {
+                    Prototype prototype = (Prototype) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(new Closure(this, prototype, env.capture(prototype.getExpr().getCaptures(), frame.upvalues)));
+                    break;
+                }
+                case OP_METHOD: {
+                    Prototype prototype = (Prototype) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(new Closure(this, prototype, null));
+                    break;
+                }
+                case OP_STRUCT: {
+                    StructExpr expr = (StructExpr) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    ip += 2;
+                    push(struct(expr, env, frame.upvalues));
+                    break;
+                }
+                case OP_CALL: {
+                    int argc = code[ip++] & 0xff;
+                    frame.ip = ip;
+                    frame.env = env;
+                    callValue(argc, tokenAt(frame.prototype, ip - 1));
+                    frame = frames[frameCount - 1];
+                    code = frame.prototype.getCode();
+                    constants = frame.prototype.getConstants();
+                    env = frame.env;
+                    ip = frame.ip;
+                    break;
+                }
+                case OP_INVOKE: {
+                    InlineCache cache = (InlineCache) constants[((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff)];
+                    int argc = code[ip + 2] & 0xff;
+                    ip += 3;
+                    frame.ip = ip;
+                    frame.env = env;
+                    invokeProperty(cache, argc, tokenAt(frame.prototype, ip - 1));
+                    frame = frames[frameCount - 1];
+                    code = frame.prototype.getCode();
+                    constants = frame.prototype.getConstants();
+                    env = frame.env;
+                    ip = frame.ip;
+                    break;
+                }
+                case OP_PUSH_SCOPE: {
+                    int slots = ((code[ip] & 0xff) << 8) | (code[ip + 1] & 0xff);
+                    ip += 2;
+                    env = new Environment(env, slots);
+                    break;
+                }
+                case OP_POP_SCOPE: env = env.getParent(); break;
+                case OP_RET: {
+                    Object result = pop();
+                    while (top > frame.stackBase) {
+                        pop();
+                    }
+                    push(result);
+                    frameCount--;
+                    if (frameCount == base) {
+                        return;
+                    }
+                    frame = frames[frameCount - 1];
+                    code = frame.prototype.getCode();
+                    constants = frame.prototype.getConstants();
+                    env = frame.env;
+                    ip = frame.ip;
+                    break;
+                }
+                default: throw new RuntimeError(tokenAt(frame.prototype, ip - 1), "Unknown opcode " + op + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.bifffly.canterbury;
+
+import com.bifffly.canterbury.closure.Evaluator;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.interpreter.Resolver;
+import com.bifffly.canterbury.optimizer.Optimizer;
+import com.bifffly.canterbury.parser.Parser;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.tokens.Source;
+import com.bifffly.canterbury.tokens.Tokenizer;
+import com.bifffly.canterbury.vm.Compiler;
+import com.bifffly.canterbury.vm.VM;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Runs scripts the way the command line does and returns everything they print
+public class Scripts {
+    public static List<Stmt> parse(String src) {
+        ErrorReporter errors = new ErrorReporter();
+        List<Stmt> stmts = new Parser(new Tokenizer(Source.of(src), errors).pull(), errors).parse();
+        if (errors.hadError()) {
+            throw new IllegalArgumentException(String.join("\n", errors.getMessages()));
+        }
+        return stmts;
+    }
+
+    public static String interpret(String src) {
+        return run(parse(src), false, (stmts) -> new Interpreter().interpret(stmts));
+    }
+
+    public static String optimized(String src) {
+        return run(parse(src), true, (stmts) -> new Interpreter().interpret(stmts));
+    }
+
+    public static String vm(String src) {
+        return run(parse(src), false, (stmts) -> new VM().interpret(new Compiler().compile(stmts)));
+    }
+
+    public static String closures(String src) {
+        return run(parse(src), false, (stmts) -> new Evaluator().interpret(stmts));
+    }
+
+    public static String jit(String src) {
+        return run(parse(src), false, (stmts) -> {
+            Interpreter interpreter = new Interpreter();
+            interpreter.enableJit();
+            interpreter.interpret(stmts);
+        });
+    }
+
+    public static String run(List<Stmt> stmts, boolean optimize, Consumer<List<Stmt>> backend) {
+        return capture(() -> {
+            List<Stmt> program = optimize ? Optimizer.standard().optimize(stmts) : stmts;
+            new Resolver().resolve(program);
+            backend.accept(program);
+        });
+    }
+
+    public static String capture(Runnable action) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream stream = new PrintStream(bytes, true);
+        try {
+            System.setOut(stream);
+            System.setErr(stream);
+            action.run();
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return bytes.toString().replace("\r\n", "\n");
+    }
+}
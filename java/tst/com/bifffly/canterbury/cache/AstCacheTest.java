@@ -0,0 +1,78 @@
+package com.bifffly.canterbury.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.bifffly.canterbury.Scripts;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.optimizer.AstPrinter;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AstCacheTest {
+    // Uses every kind of node and literal, and ends in a runtime error so that lines are checked too
+    private static final String SRC = "import IO(print)\n"
+        + "Point := struct(x, y) {\n"
+        + "    z := 3;\n"
+        + "    sum := λ() { return x + y + self z; };\n"
+        + "};\n"
+        + "p := Point(1, 2);\n"
+        + "print(p sum());\n"
+        + "describe := func(n) {\n"
+        + "    return match (n) against { (_ = 0 -> \"zero\") (_ > 10 -> 'big') (true -> null) };\n"
+        + "};\n"
+        + "print(describe(0));\n"
+        + "print(describe(11));\n"
+        + "i := 0;\n"
+        + "while (i < 3 and !false) { i := i + 1; }\n"
+        + "if (i = 2) { print(1); } elif (-i < 0 or (i <> 3)) { print(0x1f & 0b11); } else { print(2.5); }\n"
+        + "print(p w);\n";
+
+    private static String print(List<Stmt> stmts) {
+        return new AstPrinter().print(stmts);
+    }
+
+    private static String interpret(List<Stmt> stmts) {
+        return Scripts.run(stmts, false, (program) -> new Interpreter().interpret(program));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        List<Stmt> stmts = new AstReader(ByteBuffer.wrap(new AstWriter().write(Scripts.parse(SRC)))).read();
+        assertEquals(print(Scripts.parse(SRC)), print(stmts));
+        assertEquals(Scripts.interpret(SRC), interpret(stmts));
+    }
+
+    @Test
+    public void testStoreAndLoad(@TempDir Path dir) throws IOException {
+        Path script = dir.resolve("script.cant");
+        Files.writeString(script, SRC);
+        AstCache cache = new AstCache(dir.resolve("cache"));
+        String key = cache.key(script);
+        assertNull(cache.load(key));
+
+        cache.store(key, Scripts.parse(SRC));
+        assertEquals(Scripts.interpret(SRC), interpret(cache.load(key)));
+    }
+
+    @Test
+    public void testOtherFormat_ignored(@TempDir Path dir) throws IOException {
+        byte[] bytes = new AstWriter().write(Scripts.parse(SRC));
+        ByteBuffer.wrap(bytes).putInt(4, AstFormat.VERSION + 1);
+        assertNull(new AstReader(ByteBuffer.wrap(bytes)).read());
+        ByteBuffer.wrap(bytes).putInt(4, AstFormat.VERSION).putInt(0, 0);
+        assertNull(new AstReader(ByteBuffer.wrap(bytes)).read());
+
+        AstCache cache = new AstCache(dir);
+        Files.write(dir.resolve("stale.ast"), bytes);
+        assertNull(cache.load("stale"));
+        Files.write(dir.resolve("truncated.ast"), new byte[] {0x43, 0x41});
+        assertNull(cache.load("truncated"));
+    }
+}
@@ -0,0 +1,75 @@
+package com.bifffly.canterbury.closure;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class EvaluatorTest {
+    // The closures backend has to print exactly what the tree-walking interpreter prints
+    private static void assertParity(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.closures(src));
+    }
+
+    @Test
+    public void testStructsAndClosures() {
+        assertParity("9\n9\n111\n", "import IO(print)\n"
+            + "factory := func(scale) {\n"
+            + "    Vec := struct(x, y) {\n"
+            + "        scaled := func() { return (x + y) * scale; };\n"
+            + "        me := func() { return self; };\n"
+            + "    };\n"
+            + "    return Vec;\n"
+            + "};\n"
+            + "v := factory(3)(1, 2);\n"
+            + "print(v scaled());\n"
+            + "print(v me() scaled());\n"
+            + "add := func(a) { mid := func(b) { inner := func(c) { return a + b + c; }; return inner; }; return mid; };\n"
+            + "print(add(1)(10)(100));\n");
+    }
+
+    @Test
+    public void testControlFlow() {
+        assertParity("10\n0\n1\n2\ntwo\ntrue\nfalse\n", "import IO(print)\n"
+            + "i := 0;\n"
+            + "while (i < 10) { i := i + 1; }\n"
+            + "print(i);\n"
+            + "for (j := 0;, j < 3, j := j + 1) { print(j); }\n"
+            + "if (i = 1) { print('one'); } elif (i = 10) { print('two'); } else { print('three'); }\n"
+            + "print(!(i < 5) and i <> 3);\n"
+            + "print(null or i < 5);\n");
+    }
+
+    @Test
+    public void testRuntimeErrors() {
+        assertParity("1\nExpected 1args, received 2.\n[line 4]\n", "import IO(print)\n"
+            + "f := func(a) { return a; };\n"
+            + "print(f(1));\n"
+            + "print(f(1, 2));\n");
+    }
+
+    @Test
+    public void testSitesSeeingMixedValues() {
+        assertParity("true\ntrue\nfalse\ntrue\nyes\nyes\nno\nno\n4\n3\nCannot retrieve property.\n[line 6]\n", "import IO(print)\n"
+            + "A := struct(v) { get := func() { return self v; }; };\n"
+            + "B := struct(w, v) { get := func() { return self w; }; };\n"
+            + "same := func(a, b) { return a = b; };\n"
+            + "truthy := func(x) { if (x) { return 'yes'; } return 'no'; };\n"
+            + "value := func(o) { return o v; };\n"
+            + "print(same(1, 1)); print(same('a', 'a')); print(same(1, '1')); print(same(null, null));\n"
+            + "print(truthy(0)); print(truthy('')); print(truthy(null)); print(truthy(false));\n"
+            + "a := A(1); b := B(2, 3);\n"
+            + "print(value(a) + value(b)); print(a get() + b get()); print(value(5));\n");
+    }
+
+    @Test
+    public void testCallSiteFollowsReassignedCallee() {
+        assertParity("2\n10\n", "import IO(print)\n"
+            + "op := func(x) { return x + 1; };\n"
+            + "apply := func(x) { return op(x); };\n"
+            + "print(apply(1));\n"
+            + "op := func(x) { return x * 10; };\n"
+            + "print(apply(1));\n");
+    }
+}
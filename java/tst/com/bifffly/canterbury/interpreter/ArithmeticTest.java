@@ -0,0 +1,39 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class ArithmeticTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+    }
+
+    @Test
+    public void testNestedArithmetic() {
+        assertPrints("0.75\n10\ntrue\nfalse\n-4\n", "import IO(print)\n"
+            + "x := 4;\n"
+            + "print(1 + 2 * (3 - 4) / 8);\n"
+            + "print(-(2 + 3) * -2);\n"
+            + "print(1 < 2);\n"
+            + "print(3 - 1 >= 2 + 1);\n"
+            + "print(-x);\n");
+    }
+
+    @Test
+    public void testBadLeftOperand_evaluatesRightFirst() {
+        assertPrints("ran\nOperands must be numbers.\n[line 3]\n", "import IO(print)\n"
+            + "f := func() { print(\"ran\"); return 1; };\n"
+            + "print(\"x\" - f());\n");
+    }
+
+    @Test
+    public void testBadLeftComparison_evaluatesRightFirst() {
+        assertPrints("ran\nOperands must be numbers.\n[line 3]\n", "import IO(print)\n"
+            + "f := func() { print(\"ran\"); return 1; };\n"
+            + "print((\"x\") < f());\n");
+    }
+}
@@ -0,0 +1,78 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class CallTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.optimized(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+
+    @Test
+    public void testCallsOfEveryArity_tooManyArguments() {
+        assertPrints("0\n7\n12\n123\n15\n4\n12\nExpected 1args, received 2.\n[line 27]\n", "import IO(print)\n"
+            + "zero := func() {\n"
+            + "    return 0;\n"
+            + "};\n"
+            + "one := func(a) {\n"
+            + "    return a;\n"
+            + "};\n"
+            + "two := func(a, b) {\n"
+            + "    return a * 10 + b;\n"
+            + "};\n"
+            + "three := func(a, b, c) {\n"
+            + "    return a * 100 + b * 10 + c;\n"
+            + "};\n"
+            + "five := func(a, b, c, d, e) {\n"
+            + "    return a + b + c + d + e;\n"
+            + "};\n"
+            + "twice := func(f, x) {\n"
+            + "    return f(f(x));\n"
+            + "};\n"
+            + "print(zero());\n"
+            + "print(one(7));\n"
+            + "print(two(1, 2));\n"
+            + "print(three(1, 2, 3));\n"
+            + "print(five(1, 2, 3, 4, 5));\n"
+            + "print(twice(one, 4));\n"
+            + "print(two(three(0, 0, 1), one(2)));\n"
+            + "print(one(1, 2));\n");
+    }
+
+    @Test
+    public void testCallsOfEveryArity_tooFewArguments() {
+        assertPrints("0\n7\n12\n123\n15\n4\n12\nExpected 3args, received 2.\n[line 27]\n", "import IO(print)\n"
+            + "zero := func() {\n"
+            + "    return 0;\n"
+            + "};\n"
+            + "one := func(a) {\n"
+            + "    return a;\n"
+            + "};\n"
+            + "two := func(a, b) {\n"
+            + "    return a * 10 + b;\n"
+            + "};\n"
+            + "three := func(a, b, c) {\n"
+            + "    return a * 100 + b * 10 + c;\n"
+            + "};\n"
+            + "five := func(a, b, c, d, e) {\n"
+            + "    return a + b + c + d + e;\n"
+            + "};\n"
+            + "twice := func(f, x) {\n"
+            + "    return f(f(x));\n"
+            + "};\n"
+            + "print(zero());\n"
+            + "print(one(7));\n"
+            + "print(two(1, 2));\n"
+            + "print(three(1, 2, 3));\n"
+            + "print(five(1, 2, 3, 4, 5));\n"
+            + "print(twice(one, 4));\n"
+            + "print(two(three(0, 0, 1), one(2)));\n"
+            + "print(three(1, 2));\n");
+    }
+}
@@ -0,0 +1,64 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class ClosureTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+
+    @Test
+    public void testClosuresInLoop_shareTheLoopVariable() {
+        assertPrints("20\n20\n", "import IO(print)\n"
+            + "mk := func(n) {\n"
+            + "    i := 0;\n"
+            + "    first := 0;\n"
+            + "    while (i < n) {\n"
+            + "        j := i;\n"
+            + "        g := func() { return j * 10; };\n"
+            + "        if (i = 0) { first := g; }\n"
+            + "        i := i + 1;\n"
+            + "    }\n"
+            + "    print(first());\n"
+            + "    print(g());\n"
+            + "    return 0;\n"
+            + "};\n"
+            + "mk(3);\n");
+    }
+
+    @Test
+    public void testClosure_seesLaterAssignments() {
+        assertPrints("2\n", "import IO(print)\n"
+            + "mk := func() {\n"
+            + "    x := 1;\n"
+            + "    f := func() { return x; };\n"
+            + "    x := 2;\n"
+            + "    return f;\n"
+            + "};\n"
+            + "f := mk();\n"
+            + "print(f());\n");
+    }
+
+    @Test
+    public void testFunctionFields_calledOffAnInstance_keepTheirClosure() {
+        assertPrints("42\n7\n1\n", "import IO(print)\n"
+            + "mk := func(a) { g := func() { return a; }; return g; };\n"
+            + "f := func() { return 7; };\n"
+            + "S := struct(x) {\n"
+            + "    h := mk(42);\n"
+            + "    store := func(v) { self cb := v; return 0; };\n"
+            + "    get := func() { return x; };\n"
+            + "};\n"
+            + "s := S(1);\n"
+            + "s store(f);\n"
+            + "print(s h());\n"
+            + "print(s cb());\n"
+            + "print(s get());\n");
+    }
+}
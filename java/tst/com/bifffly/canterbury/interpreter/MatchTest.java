@@ -0,0 +1,43 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class MatchTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+    }
+
+    @Test
+    public void testLiteralArms_matchByEquality() {
+        assertPrints("b\nc\n", "import IO(print)\n"
+            + "f := func(s) { return match (s) against { (0 -> \"a\") (1 -> \"b\") (true -> \"c\") }; };\n"
+            + "print(f(1));\n"
+            + "print(f(2));\n");
+    }
+
+    @Test
+    public void testVariableArms_matchLikeLiteralArms() {
+        assertPrints("b\nb\nc\nc\n", "import IO(print)\n"
+            + "zero := 0;\n"
+            + "one := 1;\n"
+            + "f := func(s) { return match (s) against { (zero -> \"a\") (one -> \"b\") (true -> \"c\") }; };\n"
+            + "g := func(s) { return match (s) against { (0 -> \"a\") (1 -> \"b\") (true -> \"c\") }; };\n"
+            + "print(f(1));\n"
+            + "print(g(1));\n"
+            + "print(f(2));\n"
+            + "print(g(2));\n");
+    }
+
+    @Test
+    public void testGuardArms() {
+        assertPrints("big\nfalse\nnull\n", "import IO(print)\n"
+            + "print(match (500) against { (_ > 100 -> \"big\") (true -> \"small\") });\n"
+            + "print(match (false) against { (_ -> _) });\n"
+            + "print(match (5) against { (false -> 1) });\n");
+    }
+}
@@ -0,0 +1,51 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class ReturnTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.optimized(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+
+    @Test
+    public void testReturnFromNestedLoops() {
+        assertPrints("43\n-1\n3\n", "import IO(print)\n"
+            + "find := func(n) {\n"
+            + "    i := 0;\n"
+            + "    while (i < 100) {\n"
+            + "        j := 0;\n"
+            + "        while (j < 100) {\n"
+            + "            if (i * j = n) { return i + j; }\n"
+            + "            j := j + 1;\n"
+            + "        }\n"
+            + "        i := i + 1;\n"
+            + "    }\n"
+            + "    return -1;\n"
+            + "};\n"
+            + "print(find(42));\n"
+            + "print(find(100000));\n"
+            + "Box := struct(v) { first := func() { i := 0; while (true) { if (i = v) { return i; } i := i + 1; } }; };\n"
+            + "print(Box(3) first());\n");
+    }
+
+    @Test
+    public void testReturnValues() {
+        assertPrints("null\nnull\none\nmany\n2\n", "import IO(print)\n"
+            + "nothing := func() { return; };\n"
+            + "print(nothing());\n"
+            + "fall := func() { x := 1; };\n"
+            + "print(fall());\n"
+            + "pick := func(n) { return match (n) against { (_ = 1 -> \"one\") (true -> \"many\") }; };\n"
+            + "print(pick(1));\n"
+            + "print(pick(5));\n"
+            + "outer := func() { inner := func() { return 1; }; inner(); return 2; };\n"
+            + "print(outer());\n");
+    }
+}
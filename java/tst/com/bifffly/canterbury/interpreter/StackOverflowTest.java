@@ -0,0 +1,42 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class StackOverflowTest {
+    private static final String DEEP = "import IO(print)\n"
+        + "depth := func(n) { if (n = 0) { return 0; } return 1 + depth(n - 1); };\n"
+        + "print(depth(1000000));\n";
+
+    private static final String OVERFLOW = "Stack overflow, run with --vm for deeper recursion.\n";
+
+    @Test
+    public void testDeepRecursion_reportedByTreeWalkers() {
+        assertEquals(OVERFLOW, Scripts.interpret(DEEP));
+        assertEquals(OVERFLOW, Scripts.closures(DEEP));
+        assertEquals(OVERFLOW, Scripts.jit(DEEP));
+    }
+
+    @Test
+    public void testDeepRecursion_runsOnVm() {
+        assertEquals("1000000\n", Scripts.vm(DEEP));
+    }
+
+    @Test
+    public void testInterpreter_runsOnAfterOverflow() {
+        List<Stmt> deep = Scripts.parse(DEEP);
+        List<Stmt> next = Scripts.parse("IO print(1 + 1);\n");
+        new Resolver().resolve(deep);
+        new Resolver().resolve(next);
+        Interpreter interpreter = new Interpreter();
+        assertEquals(OVERFLOW + "2\n", Scripts.capture(() -> {
+            interpreter.interpret(deep);
+            interpreter.interpret(next);
+        }));
+    }
+}
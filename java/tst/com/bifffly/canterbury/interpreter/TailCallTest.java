@@ -0,0 +1,50 @@
+package com.bifffly.canterbury.interpreter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class TailCallTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.optimized(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+
+    @Test
+    public void testTailCalls_runInConstantStack() {
+        // Self, mutual, match arm and method tail calls a million deep
+        assertPrints("1000000\nfalse\ndone\nmethod\n", "import IO(print)\n"
+            + "count := func(n, acc) {\n"
+            + "    if (n = 0) { return acc; }\n"
+            + "    return count(n - 1, acc + 1);\n"
+            + "};\n"
+            + "isEven := func(n) {\n"
+            + "    if (n = 0) { return true; }\n"
+            + "    return isOdd(n - 1);\n"
+            + "};\n"
+            + "isOdd := func(n) {\n"
+            + "    if (n = 0) { return false; }\n"
+            + "    return isEven(n - 1);\n"
+            + "};\n"
+            + "pick := func(n) {\n"
+            + "    return match (n) against {\n"
+            + "        (_ = 0 -> \"done\")\n"
+            + "        (true -> (pick(n - 1)))\n"
+            + "    };\n"
+            + "};\n"
+            + "Counter := struct() {\n"
+            + "    down := func(n) {\n"
+            + "        if (n = 0) { return \"method\"; }\n"
+            + "        return self down(n - 1);\n"
+            + "    };\n"
+            + "};\n"
+            + "print(count(1000000, 0));\n"
+            + "print(isEven(1000001));\n"
+            + "print(pick(1000000));\n"
+            + "print(Counter() down(1000000));\n");
+    }
+}
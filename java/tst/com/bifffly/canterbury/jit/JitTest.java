@@ -0,0 +1,70 @@
+package com.bifffly.canterbury.jit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.bifffly.canterbury.Scripts;
+import com.bifffly.canterbury.interpreter.Interpreter;
+import com.bifffly.canterbury.parser.expr.AssignmentExpr;
+import com.bifffly.canterbury.parser.expr.FuncExpr;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class JitTest {
+    // Calls fib often enough for the JIT to compile it before the script goes on
+    private static final String FIB = "import IO(print)\n"
+        + "fib := func(n) { if (n < 2) { return n; } return fib(n - 2) + fib(n - 1); };\n"
+        + "k := 0;\n"
+        + "while (k < " + (Jit.THRESHOLD + 100) + ") { fib(2); k := k + 1; }\n";
+
+    // Runs a script with the JIT on and checks that the function it starts with was compiled
+    private static String jit(String src) {
+        List<Stmt> stmts = Scripts.parse(src);
+        String out = Scripts.run(stmts, false, (program) -> {
+            Interpreter interpreter = new Interpreter();
+            interpreter.enableJit();
+            interpreter.interpret(program);
+        });
+        ExpressionStmt first = (ExpressionStmt) stmts.get(1);
+        FuncExpr func = (FuncExpr) ((AssignmentExpr) first.getExpr()).getValue();
+        assertNotNull(func.getProfile().code);
+        return out;
+    }
+
+    private static void assertSameAsInterpreter(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, jit(src));
+    }
+
+    @Test
+    public void testCompiledCalls() {
+        assertSameAsInterpreter("6765\n", FIB + "print(fib(20));\n");
+    }
+
+    @Test
+    public void testNumberEdgeCases() {
+        assertSameAsInterpreter("false\ntrue\ntrue\n", "import IO(print)\n"
+            + "eq := func(a, b) { t := a; return t = b; };\n"
+            + "k := 0;\n"
+            + "while (k < " + (Jit.THRESHOLD + 100) + ") { eq(1, 1); k := k + 1; }\n"
+            + "print(eq(0, -0));\n"
+            + "print(eq(0 / 0, 0 / 0));\n"
+            + "print(eq(1, 1));\n");
+    }
+
+    @Test
+    public void testNonNumberArgument_fallsBack() {
+        assertSameAsInterpreter("Operands must be numbers.\n[line 2]\n", FIB + "print(fib(\"a\" = \"a\"));\n");
+    }
+
+    @Test
+    public void testRebindingName_fallsBack() {
+        // The compiled fib calls itself directly only while 'fib' still holds it
+        assertSameAsInterpreter("200\n", FIB
+            + "old := fib;\n"
+            + "fib := func(n) { return 100; };\n"
+            + "print(old(5));\n");
+    }
+}
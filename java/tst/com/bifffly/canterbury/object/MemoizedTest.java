@@ -0,0 +1,74 @@
+package com.bifffly.canterbury.object;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class MemoizedTest {
+    private static void assertPrints(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+    }
+
+    @Test
+    public void testCachedResults() {
+        assertPrints("55\n8\n11\n", "import IO(print)\n"
+            + "import Memo(memo, hits, misses)\n"
+            + "fib := func(n) { if (n < 2) { return n; } return fib(n - 2) + fib(n - 1); };\n"
+            + "fib := memo(fib, 100);\n"
+            + "print(fib(10));\n"
+            + "print(hits(fib));\n"
+            + "print(misses(fib));\n");
+    }
+
+    @Test
+    public void testUserFunctionNamedLikeIo() {
+        assertPrints("8\n8\n1\n", "import IO(print)\n"
+            + "import Memo(memo, hits)\n"
+            + "print := func(n) { return n * 2; };\n"
+            + "double := func(n) { return print(n); };\n"
+            + "double := memo(double, 10);\n"
+            + "IO print(double(4));\n"
+            + "IO print(double(4));\n"
+            + "IO print(hits(double));\n");
+    }
+
+    @Test
+    public void testDirectIo_refusedWhenWrapped() {
+        assertPrints("Cannot memoize a function with side effects.\n[line 3]\n", "import IO(print)\n"
+            + "import Memo(memo)\n"
+            + "log := func(n) { IO print(n); return n; };\n"
+            + "log := memo(log, 10);\n"
+            + "log(1);\n");
+    }
+
+    @Test
+    public void testIndirectIo_refusedWhenWrapped() {
+        assertPrints("Cannot memoize a function with side effects.\n[line 4]\n", "import IO(print)\n"
+            + "import Memo(memo)\n"
+            + "log := func(n) { print(n); return n; };\n"
+            + "wrapped := func(n) { return log(n) + 1; };\n"
+            + "wrapped := memo(wrapped, 10);\n"
+            + "print(wrapped(1));\n");
+    }
+
+    @Test
+    public void testIoBoundLater_reportedAtTheCall() {
+        assertPrints("1\nCannot memoize a function with side effects.\n[line 7]\n", "import IO(print)\n"
+            + "import Memo(memo)\n"
+            + "log := func(n) { return n; };\n"
+            + "wrapped := func(n) { return log(n); };\n"
+            + "wrapped := memo(wrapped, 10);\n"
+            + "log := func(n) { print(n); return n; };\n"
+            + "print(wrapped(1));\n");
+    }
+
+    @Test
+    public void testPropertyAssignment_refused() {
+        assertPrints("Cannot memoize a function with side effects.\n[line 2]\n", "import Memo(memo)\n"
+            + "p := struct(v) { set := func(x) { self v := x; return x; }; };\n"
+            + "s := memo(p(1) set, 10);\n");
+    }
+}
@@ -0,0 +1,141 @@
+package com.bifffly.canterbury.object;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class StructTest {
+    private static final String POINT = "import IO(print)\n"
+        + "Point := struct(x, y) {\n"
+        + "    z := 3;\n"
+        + "    sum := func() { return x + y + self z; };\n"
+        + "};\n";
+
+    @Test
+    public void testParamsReadableAsFields() {
+        String src = POINT
+            + "p := Point(1, 2);\n"
+            + "print(p x);\n"
+            + "print(p y);\n"
+            + "print(p sum());\n";
+        assertEquals("1\n2\n6\n", Scripts.interpret(src));
+        assertEquals("1\n2\n6\n", Scripts.vm(src));
+    }
+
+    @Test
+    public void testParamsKeptPerInstance() {
+        String src = POINT
+            + "p := Point(1, 2);\n"
+            + "q := Point(5, 6);\n"
+            + "print(p x);\n"
+            + "print(q x);\n";
+        assertEquals("1\n5\n", Scripts.interpret(src));
+        assertEquals("1\n5\n", Scripts.vm(src));
+    }
+
+    @Test
+    public void testFunctionFieldsKeepTheirClosure() {
+        String src = "import IO(print)\n"
+            + "mk := func(a) { g := func() { return a; }; return g; };\n"
+            + "f := func() { return 7; };\n"
+            + "S := struct(x) { h := mk(42); store := func(v) { self cb := v; return 0; }; };\n"
+            + "s := S(1);\n"
+            + "s store(f);\n"
+            + "h := s h;\n"
+            + "cb := s cb;\n"
+            + "print(h());\n"
+            + "print(cb());\n";
+        assertEquals("42\n7\n", Scripts.interpret(src));
+        assertEquals("42\n7\n", Scripts.vm(src));
+        assertEquals("42\n7\n", Scripts.closures(src));
+    }
+
+    @Test
+    public void testFieldsAddedInAnyOrder() {
+        // Instances that add the same fields in a different order end up with different shapes
+        String src = "import IO(print)\n"
+            + "P := struct(x) {\n"
+            + "    a := 1;\n"
+            + "    set := func(name, v) {\n"
+            + "        match (name) against {\n"
+            + "            (_ = \"b\" -> self b := v)\n"
+            + "            (_ = \"c\" -> self c := v)\n"
+            + "            (_ = \"d\" -> self d := v)\n"
+            + "            (_ = \"e\" -> self e := v)\n"
+            + "            (_ = \"f\" -> self f := v)\n"
+            + "        };\n"
+            + "        return v;\n"
+            + "    };\n"
+            + "    sum := func() { return self b + self c; };\n"
+            + "};\n"
+            + "p := P(1);\n"
+            + "q := P(2);\n"
+            + "p set(\"b\", 10);\n"
+            + "p set(\"c\", 20);\n"
+            + "q set(\"c\", 300);\n"
+            + "q set(\"b\", 400);\n"
+            + "print(p sum());\n"
+            + "print(q sum());\n"
+            + "p set(\"d\", 1);\n"
+            + "p set(\"e\", 2);\n"
+            + "p set(\"f\", 3);\n"
+            + "print(p d + p e + p f + p a);\n"
+            + "print(q x);\n"
+            + "print(q d);\n";
+        String expected = "30\n700\n7\n2\nUndefined variable d.\n[line 29]\n";
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+    }
+
+    @Test
+    public void testCallSitesSeeingManyStructs() {
+        // The same sites read and call through instances of three different structs in turn
+        String src = "import IO(print)\n"
+            + "A := struct(x) {\n"
+            + "    scale := 2;\n"
+            + "    describe := func() {\n"
+            + "        return self x * self scale;\n"
+            + "    };\n"
+            + "};\n"
+            + "B := struct(w, x) {\n"
+            + "    extra := 5;\n"
+            + "    describe := func() {\n"
+            + "        return self w + self x + self extra;\n"
+            + "    };\n"
+            + "};\n"
+            + "C := struct(x) {\n"
+            + "    describe := 1000;\n"
+            + "};\n"
+            + "readX := func(o) {\n"
+            + "    return o x;\n"
+            + "};\n"
+            + "describe := func(o) {\n"
+            + "    return o describe();\n"
+            + "};\n"
+            + "a := A(1);\n"
+            + "b := B(10, 20);\n"
+            + "c := C(300);\n"
+            + "item := func(i) {\n"
+            + "    return match (i) against {\n"
+            + "        (_ = 0 -> a)\n"
+            + "        (_ = 1 -> b)\n"
+            + "        (true -> a)\n"
+            + "    };\n"
+            + "};\n"
+            + "for (k := 0;, k < 2, k := k + 1) {\n"
+            + "    for (i := 0;, i < 3, i := i + 1) {\n"
+            + "        print(readX(item(i)));\n"
+            + "        print(describe(item(i)));\n"
+            + "    }\n"
+            + "}\n"
+            + "print(readX(c));\n"
+            + "print(describe(c));\n";
+        String expected = "1\n2\n20\n35\n1\n2\n1\n2\n20\n35\n1\n2\n300\nExpected callable object.\n[line 21]\n";
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+}
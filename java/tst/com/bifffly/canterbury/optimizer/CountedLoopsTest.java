@@ -0,0 +1,70 @@
+package com.bifffly.canterbury.optimizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class CountedLoopsTest {
+    @Test
+    public void testCountedLoopEdgeCases() {
+        // Counters read after the loop, zero iterations, fractional and negative steps, a counter
+        // the body assigns, a bound the body changes, a captured counter and a counter that is
+        // not a number
+        String src = "import IO(print)\n"
+            + "run := func(limit) {\n"
+            + "    i := 0;\n"
+            + "    while (i < limit) {\n"
+            + "        i := i + 1;\n"
+            + "    }\n"
+            + "    print(i);\n"
+            + "    for (j := 0;, j < 0, j := j + 1) {\n"
+            + "        print(\"never\");\n"
+            + "    }\n"
+            + "    h := 0;\n"
+            + "    while (h < 2) {\n"
+            + "        h := h + 0.5;\n"
+            + "    }\n"
+            + "    print(h);\n"
+            + "    d := 10;\n"
+            + "    n := 0;\n"
+            + "    while (d > 0) {\n"
+            + "        n := n + d;\n"
+            + "        d := d - 3;\n"
+            + "    }\n"
+            + "    print(n);\n"
+            + "    print(d);\n"
+            + "    k := 0;\n"
+            + "    while (k < 10) {\n"
+            + "        k := k * 2;\n"
+            + "        k := k + 1;\n"
+            + "    }\n"
+            + "    print(k);\n"
+            + "    b := 0;\n"
+            + "    top := 3;\n"
+            + "    while (b < top) {\n"
+            + "        top := 5;\n"
+            + "        b := b + 1;\n"
+            + "    }\n"
+            + "    print(b);\n"
+            + "    last := 0;\n"
+            + "    c := 0;\n"
+            + "    while (c < 3) {\n"
+            + "        last := func() { return c; };\n"
+            + "        c := c + 1;\n"
+            + "    }\n"
+            + "    print(last());\n"
+            + "    s := \"a\";\n"
+            + "    while (s < 3) {\n"
+            + "        s := s + 1;\n"
+            + "    }\n"
+            + "};\n"
+            + "run(4);\n";
+        String expected = "4\n2\n22\n-2\n15\n5\n3\nOperands must be numbers.\n[line 45]\n";
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.optimized(src));
+        assertEquals(expected, Scripts.vm(src));
+        assertEquals(expected, Scripts.closures(src));
+        assertEquals(expected, Scripts.jit(src));
+    }
+}
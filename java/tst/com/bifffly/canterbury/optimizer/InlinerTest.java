@@ -0,0 +1,35 @@
+package com.bifffly.canterbury.optimizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class InlinerTest {
+    @Test
+    public void testInlinedCall() {
+        String src = "import IO(print)\n"
+            + "add := func(a, b) { return a + b; };\n"
+            + "x := 2;\n"
+            + "print(add(x, 3));\n";
+        assertEquals("5\n", Scripts.optimized(src));
+        assertEquals(Scripts.interpret(src), Scripts.optimized(src));
+    }
+
+    @Test
+    public void testUnusedArgument_stillEvaluated() {
+        String src = "import IO(print)\n"
+            + "first := func(a, b) { return a; };\n"
+            + "print(first(1, undefinedThing));\n";
+        assertEquals("Undefined variable undefinedThing.\n[line 3]\n", Scripts.optimized(src));
+        assertEquals(Scripts.interpret(src), Scripts.optimized(src));
+    }
+
+    @Test
+    public void testReorderedArguments_keepFirstError() {
+        String src = "import IO(print)\n"
+            + "sub := func(a, b) { return b - a; };\n"
+            + "print(sub(undefinedA, undefinedB));\n";
+        assertEquals("Undefined variable undefinedA.\n[line 3]\n", Scripts.optimized(src));
+    }
+}
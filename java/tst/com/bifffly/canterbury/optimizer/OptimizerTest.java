@@ -0,0 +1,49 @@
+package com.bifffly.canterbury.optimizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.Scripts;
+import org.junit.jupiter.api.Test;
+
+public class OptimizerTest {
+    @Test
+    public void testFoldedAndPrunedProgram() {
+        // Constant operators, literal branches, a loop that never runs and code after returns
+        String src = "import IO(print)\n"
+            + "x := 1;\n"
+            + "print(2 * (3 + 4) - 10 / 4);\n"
+            + "print(1 < 2 and 3 >= 3);\n"
+            + "print(!(1 = 2) or false);\n"
+            + "print(\"a\" = \"a\");\n"
+            + "print(-(2 - 5));\n"
+            + "if (1 > 2) {\n"
+            + "    print(\"never\");\n"
+            + "} elif (2 > 1) {\n"
+            + "    x := 3;\n"
+            + "    print(x);\n"
+            + "} else {\n"
+            + "    print(\"never\");\n"
+            + "}\n"
+            + "print(x);\n"
+            + "while (1 > 2) {\n"
+            + "    print(\"never\");\n"
+            + "}\n"
+            + "f := func(n) {\n"
+            + "    if (true) {\n"
+            + "        return n + 1;\n"
+            + "    }\n"
+            + "    print(\"unreachable\");\n"
+            + "    return 0;\n"
+            + "};\n"
+            + "g := func() {\n"
+            + "    return 4;\n"
+            + "    print(\"after return\");\n"
+            + "};\n"
+            + "print(f(1));\n"
+            + "print(g());\n"
+            + "print(1 + \"a\");\n";
+        assertEquals("11.5\ntrue\ntrue\ntrue\n3\n3\n1\n2\n4\nOperands must be numbers.\n[line 33]\n",
+            Scripts.optimized(src));
+        assertEquals(Scripts.interpret(src), Scripts.optimized(src));
+    }
+}
@@ -0,0 +1,78 @@
+package com.bifffly.canterbury.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bifffly.canterbury.ErrorReporter;
+import com.bifffly.canterbury.optimizer.AstPrinter;
+import com.bifffly.canterbury.parser.stmt.Stmt;
+import com.bifffly.canterbury.tokens.Source;
+import com.bifffly.canterbury.tokens.Tokenizer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ParallelParserTest {
+    @TempDir
+    Path dir;
+
+    // Over a megabyte of statements, many of which end in a semicolon followed by 'elif' or 'else'
+    private static String script() {
+        StringBuilder src = new StringBuilder("x := 0;\n");
+        for (int i = 0; src.length() < (1 << 20) + (1 << 16); i++) {
+            src.append("if (x < ").append(i).append(") x := 0;\n")
+                .append("# a comment; with a semicolon\n")
+                .append("elif (x = 1) x := 'two;\nlines λ';\n")
+                .append("else x := ").append(i).append(";\n");
+        }
+        return src.toString();
+    }
+
+    private Source file(String src) throws IOException {
+        Path path = dir.resolve("big.cant");
+        Files.writeString(path, src, StandardCharsets.UTF_8);
+        return Source.map(path);
+    }
+
+    private static List<Stmt> sequential(String src, ErrorReporter errors) {
+        return new Parser(new Tokenizer(Source.of(src), errors).pull(), errors).parse();
+    }
+
+    @Test
+    public void testSplitKeepsElifAndElse() throws IOException {
+        String src = script();
+        Source source = file(src);
+        assertTrue(ParallelParser.worthSplitting(source));
+
+        ErrorReporter errors = new ErrorReporter();
+        List<Stmt> stmts = new ParallelParser(source, errors).parse();
+        ErrorReporter expectedErrors = new ErrorReporter();
+        AstPrinter printer = new AstPrinter();
+        assertEquals(printer.print(sequential(src, expectedErrors)), printer.print(stmts));
+        assertEquals(List.of(), errors.getMessages());
+    }
+
+    @Test
+    public void testErrorLines() throws IOException {
+        String src = script() + "y := (1;\n";
+        Source source = file(src);
+
+        ErrorReporter errors = new ErrorReporter();
+        assertThrows(RuntimeException.class, () -> new ParallelParser(source, errors).parse());
+        ErrorReporter expectedErrors = new ErrorReporter();
+        assertThrows(RuntimeException.class, () -> sequential(src, expectedErrors));
+        assertEquals(expectedErrors.getMessages(), errors.getMessages());
+        assertEquals(1, errors.getMessages().size());
+        assertTrue(errors.getMessages().get(0).startsWith("[line " + src.lines().count() + "]"));
+    }
+
+    @Test
+    public void testStringsAreNotSplit() {
+        assertTrue(!ParallelParser.worthSplitting(Source.of(script())));
+    }
+}
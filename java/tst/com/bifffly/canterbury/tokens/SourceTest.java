@@ -0,0 +1,42 @@
+package com.bifffly.canterbury.tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.bifffly.canterbury.ErrorReporter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SourceTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testPulledTokensFromMappedFile() throws IOException {
+        // Several windows' worth of text, with a string literal longer than a window in the middle
+        StringBuilder src = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            src.append("v").append(i).append(" := 'λ").append(i).append("'; # ;\n");
+        }
+        src.append("s := \"").append("é;\n".repeat(50000)).append("\";\n");
+        for (int i = 0; i < 20000; i++) {
+            src.append("w").append(i).append(" := v").append(i).append(";\n");
+        }
+        Path path = dir.resolve("src.cant");
+        Files.writeString(path, src, StandardCharsets.UTF_8);
+
+        TokenStream mapped = new Tokenizer(Source.map(path), new ErrorReporter()).pull();
+        TokenStream string = new Tokenizer(Source.of(src.toString()), new ErrorReporter()).pull();
+        for (int i = 0; string.type(i) != TokenType.EOF; i++) {
+            assertEquals(string.type(i), mapped.type(i));
+            // The oldest token the stream still holds has to be readable once the next one is scanned
+            int j = Math.max(0, i - 7);
+            assertEquals(string.lexeme(j), mapped.lexeme(j));
+            assertEquals(string.value(j), mapped.value(j));
+            assertEquals(string.line(j), mapped.line(j));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.bifffly.canterbury.tokens;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.bifffly.canterbury.ErrorReporter;
+import org.junit.jupiter.api.Test;
+
+public class TokenStreamTest {
+    private static final String SRC = "a := 1; b := 2; c := 3; d := 4; e := 5; f := 6;";
+
+    @Test
+    public void testPulledStream_keepsTheLastEightTokens() {
+        TokenStream tokens = new Tokenizer(Source.of(SRC), new ErrorReporter()).pull();
+        assertEquals("f", tokens.lexeme(20));
+        assertEquals("e", tokens.lexeme(16));
+        assertEquals(":=", tokens.lexeme(13));
+    }
+
+    @Test
+    public void testPulledStream_refusesDroppedTokens() {
+        TokenStream tokens = new Tokenizer(Source.of(SRC), new ErrorReporter()).pull();
+        tokens.type(20);
+        assertThrows(IllegalStateException.class, () -> tokens.lexeme(12));
+        assertThrows(IllegalStateException.class, () -> tokens.token(0));
+    }
+
+    @Test
+    public void testFullStream_keepsEveryToken() {
+        TokenStream tokens = new Tokenizer(Source.of(SRC), new ErrorReporter()).stream();
+        assertEquals("f", tokens.lexeme(20));
+        assertEquals("a", tokens.lexeme(0));
+    }
+}
@@ -2,6 +2,7 @@ package com.bifffly.canterbury.tokens;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.bifffly.canterbury.Scripts;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 
@@ -85,6 +86,36 @@ public class TokenizerTest {
         assertEquals(List.of(new Token(TokenType.EOF, "", null, 1)), tokens);
     }
 
+    @Test
+    public void testSkippedText_keepsLineNumbers() {
+        String src = "# a comment with 'quotes' and \"more\"\n\n   \t\r\n"
+            + "a # trailing\n"
+            + "'two\nlines' \"#not a comment\"\n"
+            + "\t\t  b";
+        Tokenizer tokenizer = new Tokenizer(src);
+
+        List<Token> tokens = tokenizer.tokenize();
+        List<Token> expected = List.of(
+            new Token(TokenType.IDENTIFIER, "a", "a", 4),
+            new Token(TokenType.STR, "'two\nlines'", "two\nlines", 6),
+            new Token(TokenType.STR, "\"#not a comment\"", "#not a comment", 6),
+            new Token(TokenType.IDENTIFIER, "b", "b", 7),
+            new Token(TokenType.EOF, "", null, 7)
+        );
+        assertEquals(expected, tokens);
+    }
+
+    @Test
+    public void testSkippedText_errorLinesInScripts() {
+        // Runs of comments, blank lines and a long string spread over many lines before the error
+        String src = "import IO(print)\n"
+            + "# comment\n".repeat(1000)
+            + " \t\n".repeat(1000)
+            + "s := '" + "text\n".repeat(1000) + "';\n"
+            + "print(missing);\n";
+        assertEquals("Undefined variable missing.\n[line 3003]\n", Scripts.interpret(src));
+    }
+
     @Test
     public void testNumber_success() {
         String src = "123 123.45 0x123 0b101";
@@ -123,6 +154,23 @@ public class TokenizerTest {
         assertEquals(expected, tokens);
     }
 
+    @Test
+    public void testStream() {
+        String src = "return x\n'y'";
+        Tokenizer tokenizer = new Tokenizer(src);
+
+        TokenStream stream = tokenizer.stream();
+        assertEquals(4, stream.size());
+        assertEquals(TokenType.RETURN, stream.type(0));
+        assertEquals("return", stream.value(0));
+        assertEquals(TokenType.IDENTIFIER, stream.type(1));
+        assertEquals("x", stream.lexeme(1));
+        assertEquals(TokenType.STR, stream.type(2));
+        assertEquals("y", stream.value(2));
+        assertEquals(2, stream.line(2));
+        assertEquals(TokenType.EOF, stream.type(3));
+    }
+
     @Test
     public void testUnexpectedCharacter() {
         String src = "á";
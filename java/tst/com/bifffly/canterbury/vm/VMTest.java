@@ -0,0 +1,121 @@
+package com.bifffly.canterbury.vm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.bifffly.canterbury.Scripts;
+import com.bifffly.canterbury.parser.expr.CallExpr;
+import com.bifffly.canterbury.parser.stmt.ExpressionStmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class VMTest {
+    // The VM has to print exactly what the tree-walking interpreter prints. The expected output is
+    // also what the interpreter printed before the VM existed, so the scripts avoid the closure
+    // capture, struct param and match semantics that have changed since.
+    private static void assertParity(String expected, String src) {
+        assertEquals(expected, Scripts.interpret(src));
+        assertEquals(expected, Scripts.vm(src));
+    }
+
+    @Test
+    public void testArithmeticAndLogic() {
+        assertParity("7\n2.5\n-3\n3\n6\ntrue\nfalse\ntrue\nfalse\n", "import IO(print)\n"
+            + "print(1 + 2 * 3);\n"
+            + "print(5 / 2);\n"
+            + "print(-(1 + 2));\n"
+            + "print(0x1f & 0b11);\n"
+            + "print(2 | 4);\n"
+            + "print(1 < 2 and 2 <= 2);\n"
+            + "print(\"a\" = 'b' or 1 <> 1);\n"
+            + "print(null or 'b');\n"
+            + "print(null and 1);\n");
+    }
+
+    @Test
+    public void testClosures() {
+        assertParity("111\n1\n1\n", "import IO(print)\n"
+            + "makeAdder := func(a) {\n"
+            + "    mid := func(b) { inner := func(c) { return a + b + c; }; return inner; };\n"
+            + "    return mid;\n"
+            + "};\n"
+            + "print(makeAdder(1)(10)(100));\n"
+            + "counter := func() { n := 0; next := func() { n := n + 1; return n; }; return next; };\n"
+            + "c := counter();\n"
+            + "c();\n"
+            + "c();\n"
+            + "print(c());\n"
+            + "print(counter()());\n");
+    }
+
+    @Test
+    public void testStructs() {
+        assertParity("9\n9\n30\n", "import IO(print)\n"
+            + "factory := func(scale) {\n"
+            + "    Vec := struct(x, y) {\n"
+            + "        scaled := func() { return (x + y) * scale; };\n"
+            + "        me := func() { return self; };\n"
+            + "    };\n"
+            + "    return Vec;\n"
+            + "};\n"
+            + "V := factory(3);\n"
+            + "v := V(1, 2);\n"
+            + "print(v scaled());\n"
+            + "print(v me() scaled());\n"
+            + "print(V(5, 5) scaled());\n");
+    }
+
+    @Test
+    public void testControlFlow() {
+        assertParity("10\n0\n1\n2\ntwo\ndone\n", "import IO(print)\n"
+            + "i := 0;\n"
+            + "while (i < 10) { i := i + 1; }\n"
+            + "print(i);\n"
+            + "for (j := 0;, j < 3, j := j + 1) { print(j); }\n"
+            + "if (i = 1) { print('one'); } elif (i = 10) { print('two'); } else { print('three'); }\n"
+            + "down := func(k) { if (k = 0) { return 'done'; } return down(k - 1); };\n"
+            + "print(down(1000));\n");
+    }
+
+    @Test
+    public void testMatch() {
+        assertParity("run\nbig\nother\n4\n", "import IO(print)\n"
+            + "state := func(s) {\n"
+            + "    return match (s) against { (_ = 0 -> 'idle') (_ = 1 -> 'run') (_ > 100 -> 'big') (true -> 'other') };\n"
+            + "};\n"
+            + "print(state(1));\n"
+            + "print(state(500));\n"
+            + "print(state(7));\n"
+            + "print(match (3) against { (_ = 1 -> 'a') (_ = 3 -> _ + 1) });\n");
+    }
+
+    @Test
+    public void testRuntimeErrors() {
+        assertParity("1\nOperands must be numbers.\n[line 3]\n", "import IO(print)\n"
+            + "print(1);\n"
+            + "f := func(a) { return a - 1; };\n"
+            + "f('x');\n"
+            + "print(2);\n");
+    }
+
+    @Test
+    public void testMostArguments() {
+        String params = IntStream.range(0, 127).mapToObj((i) -> "a" + i).collect(Collectors.joining(", "));
+        String args = IntStream.range(0, 127).mapToObj(Integer::toString).collect(Collectors.joining(", "));
+        assertParity("126\n", "import IO(print)\n"
+            + "f := func(" + params + ") { return a126; };\n"
+            + "print(f(" + args + "));\n");
+    }
+
+    @Test
+    public void testTooManyArguments_rejectedByCompiler() {
+        CallExpr call = (CallExpr) ((ExpressionStmt) Scripts.parse("f(0);").get(0)).getExpr();
+        CallExpr wide = new CallExpr(call.getCallee(), call.getBracket(), Collections.nCopies(256, call.getArgs().get(0)));
+        String output = Scripts.capture(() -> new Compiler().compile(List.of(new ExpressionStmt(wide))));
+        assertTrue(output.contains("Cannot have more than 255 arguments."), output);
+    }
+}